@@ -0,0 +1,226 @@
+package com.lambdaschool.usermodel.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lambdaschool.usermodel.services.HelperFunctions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import springfox.documentation.spring.web.plugins.DocumentationPluginsBootstrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the Swagger API document, /v2/api-docs, from memory.
+ * <p>
+ * Springfox maps its model of the API to a Swagger document and serializes it again on every request.
+ * The first request for each URL is passed through to springfox, and the document it returns is kept
+ * as bytes, both plain and gzip compressed, each with a strong ETag of its own worked out from the plain bytes.
+ * Later requests are answered with those bytes as they are, or with 304 Not Modified when they send the ETag
+ * of the form they would be sent back.
+ * <p>
+ * When springfox.documentation.auto-startup is false, springfox does not scan the controllers at startup.
+ * The scan is run instead on the first request for the API document or the Swagger UI.
+ */
+@Component
+@ConditionalOnProperty(name = "usermodel.swagger.enabled",
+    havingValue = "true",
+    matchIfMissing = true)
+public class ApiDocsCacheFilter
+    extends OncePerRequestFilter
+{
+    /**
+     * The path of the API document
+     */
+    private static final String API_DOCS = "/v2/api-docs";
+
+    /**
+     * The paths of the list of API documents the Swagger UI reads first
+     */
+    private static final String SWAGGER_RESOURCES = "/swagger-resources";
+
+    /**
+     * The most API documents kept. The document holds the host it was asked for by,
+     * so each host name and port is kept separately.
+     */
+    private static final long MAXIMUM_DOCUMENTS = 16;
+
+    /**
+     * Scans the controllers and builds the springfox model of the API
+     */
+    @Autowired
+    private DocumentationPluginsBootstrapper documentationPluginsBootstrapper;
+
+    /**
+     * Reads the Accept-Encoding header the same way the user export does
+     */
+    @Autowired
+    private HelperFunctions helperFunctions;
+
+    /**
+     * Whether the controllers have been scanned
+     */
+    private volatile boolean scanned;
+
+    /**
+     * The API documents already served, keyed by request URL and query
+     */
+    private final Cache<String, ApiDocument> documents = Caffeine.newBuilder()
+        .maximumSize(MAXIMUM_DOCUMENTS)
+        .build();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request)
+    {
+        String path = pathOf(request);
+        return !path.equals(API_DOCS) && !path.startsWith(SWAGGER_RESOURCES);
+    }
+
+    @Override
+    protected void doFilterInternal(
+        HttpServletRequest request,
+        HttpServletResponse response,
+        FilterChain filterChain)
+        throws
+        ServletException,
+        IOException
+    {
+        scan();
+
+        if (!"GET".equals(request.getMethod()) || !pathOf(request).equals(API_DOCS))
+        {
+            filterChain.doFilter(request,
+                response);
+            return;
+        }
+
+        String key = request.getRequestURL()
+            .append('?')
+            .append(request.getQueryString())
+            .toString();
+        ApiDocument document = documents.getIfPresent(key);
+        if (document == null)
+        {
+            ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+            filterChain.doFilter(request,
+                wrapper);
+            if (wrapper.getStatus() != HttpStatus.OK.value())
+            {
+                wrapper.copyBodyToResponse();
+                return;
+            }
+
+            // the body springfox wrote is still held by the wrapper, so it is served from the new document below
+            document = new ApiDocument(wrapper.getContentType(),
+                wrapper.getContentAsByteArray());
+            documents.put(key,
+                document);
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+            "no-cache");
+        response.setHeader(HttpHeaders.VARY,
+            HttpHeaders.ACCEPT_ENCODING);
+
+        // the plain and gzipped bodies are different bytes, so a strong ETag may only name one of them
+        boolean gzip = helperFunctions.acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (new ServletWebRequest(request,
+            response).checkNotModified(gzip ? document.gzippedEtag : document.etag))
+        {
+            return;
+        }
+
+        byte[] body = document.body;
+        if (gzip)
+        {
+            body = document.gzippedBody;
+            response.setHeader(HttpHeaders.CONTENT_ENCODING,
+                "gzip");
+        }
+        response.setContentType(document.contentType);
+        response.setContentLength(body.length);
+        response.getOutputStream()
+            .write(body);
+    }
+
+    /**
+     * The path of the request within the application
+     *
+     * @param request The request
+     * @return The request URI without the context path
+     */
+    private static String pathOf(HttpServletRequest request)
+    {
+        return request.getRequestURI()
+            .substring(request.getContextPath()
+                .length());
+    }
+
+    /**
+     * Scans the controllers for the API document, if springfox has not already done so
+     */
+    private void scan()
+    {
+        if (scanned)
+        {
+            return;
+        }
+        synchronized (this)
+        {
+            if (!scanned)
+            {
+                // start() does nothing if springfox already scanned the controllers at startup
+                documentationPluginsBootstrapper.start();
+                scanned = true;
+            }
+        }
+    }
+
+    /**
+     * An API document as served, ready to be written out again
+     */
+    private static class ApiDocument
+    {
+        private final String contentType;
+
+        private final byte[] body;
+
+        private final byte[] gzippedBody;
+
+        private final String etag;
+
+        private final String gzippedEtag;
+
+        ApiDocument(
+            String contentType,
+            byte[] body) throws
+                         IOException
+        {
+            this.contentType = contentType;
+            this.body = body;
+
+            ByteArrayOutputStream gzipped = new ByteArrayOutputStream(body.length / 4);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped))
+            {
+                gzip.write(body);
+            }
+            gzippedBody = gzipped.toByteArray();
+
+            String digest = DigestUtils.md5DigestAsHex(body);
+            etag = "\"" + digest + "\"";
+            gzippedEtag = "\"" + digest + "-gzip\"";
+        }
+    }
+}
@@ -1,14 +1,23 @@
 package com.lambdaschool.usermodel.config;
 
+import com.lambdaschool.usermodel.exceptions.ServiceUnavailableException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.common.exceptions.OAuth2Exception;
 import org.springframework.security.oauth2.config.annotation.configurers.ClientDetailsServiceConfigurer;
 import org.springframework.security.oauth2.config.annotation.web.configuration.AuthorizationServerConfigurerAdapter;
 import org.springframework.security.oauth2.config.annotation.web.configuration.EnableAuthorizationServer;
 import org.springframework.security.oauth2.config.annotation.web.configurers.AuthorizationServerEndpointsConfigurer;
+import org.springframework.security.oauth2.provider.error.DefaultWebResponseExceptionTranslator;
+import org.springframework.security.oauth2.provider.error.WebResponseExceptionTranslator;
 import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
 
 /**
  * This class enables and configures the Authorization Server. The class is also responsible for granting authorization to the client.
@@ -64,8 +73,15 @@ public class AuthorizationServerConfig
     /**
      * Tells how long in seconds the access code should be kept valid. After this timeout, the user has to sign on again.
      * set to -1 if you want the token to be valid forever. 1 * 60 * 60 would give us 1 hour.
+     * Read from the property usermodel.security.access-token-validity-seconds
      */
-    static final int ACCESS_TOKEN_VALIDITY_SECONDS = -1;
+    @Value("${usermodel.security.access-token-validity-seconds:-1}")
+    private int accessTokenValiditySeconds;
+
+    /**
+     * How the token endpoint reports errors other than the application being too busy
+     */
+    private final WebResponseExceptionTranslator<OAuth2Exception> exceptionTranslator = new DefaultWebResponseExceptionTranslator();
 
     /**
      * The token store is configured in Security Config. However, the authorization server manages it
@@ -73,6 +89,12 @@ public class AuthorizationServerConfig
     @Autowired
     private TokenStore tokenStore;
 
+    /**
+     * Signs the access tokens when signed tokens are in use, see JwtTokenStoreConfig. Otherwise there is none.
+     */
+    @Autowired(required = false)
+    private JwtAccessTokenConverter accessTokenConverter;
+
     /**
      * The authentication server authenticates a user to that user user gets assigned an access token that is managed by the authorization server
      */
@@ -106,7 +128,7 @@ public class AuthorizationServerConfig
             .scopes(SCOPE_READ,
                 SCOPE_WRITE,
                 TRUST)
-            .accessTokenValiditySeconds(ACCESS_TOKEN_VALIDITY_SECONDS);
+            .accessTokenValiditySeconds(accessTokenValiditySeconds);
     }
 
     /**
@@ -124,8 +146,55 @@ public class AuthorizationServerConfig
     {
         endpoints.tokenStore(tokenStore)
             .authenticationManager(authenticationManager);
+        if (accessTokenConverter != null)
+        {
+            endpoints.accessTokenConverter(accessTokenConverter);
+        }
         // here instead of our clients requesting authentication at the endpoint /oauth/token, they request it at the endpoint /login
         endpoints.pathMapping("/oauth/token",
             "/login");
+        endpoints.exceptionTranslator(this::translateException);
+    }
+
+    /**
+     * Reports the application being too busy to check the password as 503 Service Unavailable with the OAuth2 error
+     * temporarily_unavailable. All other errors are reported the standard way.
+     *
+     * @param e The exception thrown while issuing the token
+     * @return The error to send to the client
+     * @throws Exception if the exception cannot be translated
+     */
+    private ResponseEntity<OAuth2Exception> translateException(Exception e)
+        throws
+        Exception
+    {
+        if (!(e instanceof ServiceUnavailableException))
+        {
+            return exceptionTranslator.translate(e);
+        }
+
+        OAuth2Exception unavailable = new OAuth2Exception(e.getMessage())
+        {
+            @Override
+            public String getOAuth2ErrorCode()
+            {
+                return "temporarily_unavailable";
+            }
+
+            @Override
+            public int getHttpErrorCode()
+            {
+                return HttpStatus.SERVICE_UNAVAILABLE.value();
+            }
+        };
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("no-store");
+        headers.setPragma("no-cache");
+        headers.set(HttpHeaders.RETRY_AFTER,
+            "1");
+        return new ResponseEntity<>(unavailable,
+            headers,
+            HttpStatus.SERVICE_UNAVAILABLE);
     }
 }
\ No newline at end of file
@@ -0,0 +1,163 @@
+package com.lambdaschool.usermodel.config;
+
+import com.lambdaschool.usermodel.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs another password encoder on a fixed size pool of worker threads with a bounded queue.
+ * <p>
+ * Hashing and checking passwords is deliberately slow. Doing it on the request threads lets a burst of sign ups
+ * and sign ons take every request thread, so even cheap requests have to wait. Here at most a set number of
+ * passwords are worked on at once, and at most a set number wait their turn. When the queue is full the request is
+ * turned away straight away with a ServiceUnavailableException, which is reported to the client as 503 Service Unavailable.
+ * <p>
+ * The pool size, active threads, queued and completed tasks are published to the metrics endpoint under the name
+ * passwordencoder, for example <a href="http://localhost:2019/actuator/metrics/executor.queued">http://localhost:2019/actuator/metrics/executor.queued</a>.
+ * Rejected requests are counted in usermodel.passwordencoder.rejected
+ */
+public class BoundedPasswordEncoder
+    implements PasswordEncoder
+{
+    /**
+     * The name under which the pool metrics are published
+     */
+    private static final String EXECUTOR_NAME = "passwordencoder";
+
+    /**
+     * The password encoder doing the actual work
+     */
+    private final PasswordEncoder delegate;
+
+    /**
+     * The worker threads
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Counts the requests turned away because the queue was full
+     */
+    private final Counter rejected;
+
+    /**
+     * Creates the worker pool and registers its metrics
+     *
+     * @param delegate      The password encoder doing the actual work
+     * @param threads       The number (int) of passwords worked on at once
+     * @param queueCapacity The number (int) of passwords that can wait for a worker before requests are turned away
+     * @param meterRegistry The registry where the pool metrics are published
+     */
+    public BoundedPasswordEncoder(
+        PasswordEncoder delegate,
+        int threads,
+        int queueCapacity,
+        MeterRegistry meterRegistry)
+    {
+        this.delegate = delegate;
+        executor = new ThreadPoolExecutor(threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            new CustomizableThreadFactory("password-encoder-"),
+            new ThreadPoolExecutor.AbortPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry,
+            executor,
+            EXECUTOR_NAME,
+            Collections.emptyList());
+        rejected = Counter.builder("usermodel.passwordencoder.rejected")
+            .description("Password hashes and checks turned away because the password encoder queue was full")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword)
+    {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(
+        CharSequence rawPassword,
+        String encodedPassword)
+    {
+        return run(() -> delegate.matches(rawPassword,
+            encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword)
+    {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * The password encoder doing the actual work, for callers that run it on threads of their own
+     *
+     * @return the password encoder this one runs on its worker threads
+     */
+    public PasswordEncoder getDelegate()
+    {
+        return delegate;
+    }
+
+    /**
+     * Stops the worker threads once the passwords already queued are done. Called by Spring when the application shuts down.
+     */
+    public void shutdown()
+    {
+        executor.shutdown();
+    }
+
+    /**
+     * Runs the given work on a worker thread and waits for its result
+     *
+     * @param work The hashing or checking to do
+     * @param <T>  The type of the result
+     * @return The result of the work
+     * @throws ServiceUnavailableException if too many passwords are already waiting
+     */
+    private <T> T run(Callable<T> work)
+    {
+        Future<T> future;
+        try
+        {
+            future = executor.submit(work);
+        } catch (RejectedExecutionException e)
+        {
+            rejected.increment();
+            throw new ServiceUnavailableException("Too many password requests at once. Please try again shortly.");
+        }
+
+        try
+        {
+            return future.get();
+        } catch (InterruptedException e)
+        {
+            future.cancel(true);
+            Thread.currentThread()
+                .interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the password encoder",
+                e);
+        } catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
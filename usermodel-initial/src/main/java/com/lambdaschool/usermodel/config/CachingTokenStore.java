@@ -0,0 +1,202 @@
+package com.lambdaschool.usermodel.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Keeps recently used access tokens and their authentications in memory in front of another token store,
+ * so checking the token on each request does not go back to the database.
+ * <p>
+ * Tokens removed through this store are removed from the cache straight away. A token removed through another
+ * application instance sharing the same database stays usable here until its cache entry expires,
+ * so keep the expiry short.
+ * <p>
+ * The hit, miss and eviction counters are published to the metrics endpoint under the cache name accesstokens.
+ */
+public class CachingTokenStore
+    implements TokenStore
+{
+    /**
+     * The name under which the cache metrics are published
+     */
+    private static final String CACHE_NAME = "accesstokens";
+
+    /**
+     * The token store that actually keeps the tokens
+     */
+    private final TokenStore delegate;
+
+    /**
+     * Access tokens keyed by their value
+     */
+    private final Cache<String, OAuth2AccessToken> accessTokens;
+
+    /**
+     * The authentication each access token was issued for, keyed by the token value
+     */
+    private final Cache<String, OAuth2Authentication> authentications;
+
+    /**
+     * Creates the caches in front of the given token store
+     *
+     * @param delegate      The token store that actually keeps the tokens
+     * @param maximumSize   The most access tokens (long) kept in memory at any one time
+     * @param expireAfter   How long an access token is kept in memory after being loaded
+     * @param meterRegistry The registry where the cache metrics are published
+     */
+    public CachingTokenStore(
+        TokenStore delegate,
+        long maximumSize,
+        Duration expireAfter,
+        MeterRegistry meterRegistry)
+    {
+        this.delegate = delegate;
+        accessTokens = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfter)
+            .recordStats()
+            .build();
+        authentications = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfter)
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry,
+            accessTokens,
+            CACHE_NAME);
+    }
+
+    @Override
+    public OAuth2Authentication readAuthentication(OAuth2AccessToken token)
+    {
+        return readAuthentication(token.getValue());
+    }
+
+    /**
+     * Returns the authentication for the given token, loading it on a miss.
+     * The authentication manager sets the request details on what it gets back,
+     * so each caller gets its own copy rather than the cached instance.
+     *
+     * @param token The access token value
+     * @return A copy of the authentication the token was issued for, or null if the token is unknown
+     */
+    @Override
+    public OAuth2Authentication readAuthentication(String token)
+    {
+        OAuth2Authentication authentication = authentications.get(token,
+            delegate::readAuthentication);
+        if (authentication == null)
+        {
+            return null;
+        }
+        return new OAuth2Authentication(authentication.getOAuth2Request(),
+            authentication.getUserAuthentication());
+    }
+
+    @Override
+    public void storeAccessToken(
+        OAuth2AccessToken token,
+        OAuth2Authentication authentication)
+    {
+        delegate.storeAccessToken(token,
+            authentication);
+        accessTokens.put(token.getValue(),
+            token);
+        authentications.put(token.getValue(),
+            authentication);
+    }
+
+    @Override
+    public OAuth2AccessToken readAccessToken(String tokenValue)
+    {
+        return accessTokens.get(tokenValue,
+            delegate::readAccessToken);
+    }
+
+    @Override
+    public void removeAccessToken(OAuth2AccessToken token)
+    {
+        invalidate(token.getValue());
+        delegate.removeAccessToken(token);
+    }
+
+    @Override
+    public void storeRefreshToken(
+        OAuth2RefreshToken refreshToken,
+        OAuth2Authentication authentication)
+    {
+        delegate.storeRefreshToken(refreshToken,
+            authentication);
+    }
+
+    @Override
+    public OAuth2RefreshToken readRefreshToken(String tokenValue)
+    {
+        return delegate.readRefreshToken(tokenValue);
+    }
+
+    @Override
+    public OAuth2Authentication readAuthenticationForRefreshToken(OAuth2RefreshToken token)
+    {
+        return delegate.readAuthenticationForRefreshToken(token);
+    }
+
+    @Override
+    public void removeRefreshToken(OAuth2RefreshToken token)
+    {
+        delegate.removeRefreshToken(token);
+    }
+
+    /**
+     * The access tokens issued from this refresh token are not known here, so the whole cache is cleared
+     *
+     * @param refreshToken the refresh token whose access tokens are removed
+     */
+    @Override
+    public void removeAccessTokenUsingRefreshToken(OAuth2RefreshToken refreshToken)
+    {
+        delegate.removeAccessTokenUsingRefreshToken(refreshToken);
+        accessTokens.invalidateAll();
+        authentications.invalidateAll();
+    }
+
+    @Override
+    public OAuth2AccessToken getAccessToken(OAuth2Authentication authentication)
+    {
+        return delegate.getAccessToken(authentication);
+    }
+
+    @Override
+    public Collection<OAuth2AccessToken> findTokensByClientIdAndUserName(
+        String clientId,
+        String userName)
+    {
+        return delegate.findTokensByClientIdAndUserName(clientId,
+            userName);
+    }
+
+    @Override
+    public Collection<OAuth2AccessToken> findTokensByClientId(String clientId)
+    {
+        return delegate.findTokensByClientId(clientId);
+    }
+
+    /**
+     * Removes the given access token from the cache only
+     *
+     * @param tokenValue The access token value
+     */
+    private void invalidate(String tokenValue)
+    {
+        accessTokens.invalidate(tokenValue);
+        authentications.invalidate(tokenValue);
+    }
+}
@@ -0,0 +1,237 @@
+package com.lambdaschool.usermodel.config;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.support.SqlLobValue;
+import org.springframework.security.oauth2.common.ExpiringOAuth2RefreshToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.AuthenticationKeyGenerator;
+import org.springframework.security.oauth2.provider.token.DefaultAuthenticationKeyGenerator;
+import org.springframework.security.oauth2.provider.token.store.JdbcTokenStore;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * A token store kept in the application's datasource so access tokens survive a restart.
+ * <p>
+ * The tables are the ones Spring Security OAuth expects, plus an indexed expiration column on the access tokens
+ * and on the refresh tokens so expired tokens can be removed with a single delete. The tables are created when
+ * the store is created if they do not already exist.
+ * <p>
+ * A refresh token that never expires is kept only as long as an access token issued with it is kept.
+ */
+public class ExpiringJdbcTokenStore
+    extends JdbcTokenStore
+{
+    /**
+     * Creates the token tables. Access tokens are found by their token id, their authentication,
+     * their user and client, and their refresh token, so each of those is indexed.
+     * A refresh token table created before refresh tokens had an expiration gets the column added.
+     */
+    private static final String[] CREATE_SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS oauth_access_token (" +
+            "token_id VARCHAR(256) NOT NULL, " +
+            "token BLOB, " +
+            "authentication_id VARCHAR(256) NOT NULL PRIMARY KEY, " +
+            "user_name VARCHAR(256), " +
+            "client_id VARCHAR(256), " +
+            "authentication BLOB, " +
+            "refresh_token VARCHAR(256), " +
+            "expiration TIMESTAMP)",
+        "CREATE UNIQUE INDEX IF NOT EXISTS ix_oauth_access_token_token_id ON oauth_access_token (token_id)",
+        "CREATE INDEX IF NOT EXISTS ix_oauth_access_token_user_client ON oauth_access_token (user_name, client_id)",
+        "CREATE INDEX IF NOT EXISTS ix_oauth_access_token_client ON oauth_access_token (client_id)",
+        "CREATE INDEX IF NOT EXISTS ix_oauth_access_token_refresh_token ON oauth_access_token (refresh_token)",
+        "CREATE INDEX IF NOT EXISTS ix_oauth_access_token_expiration ON oauth_access_token (expiration)",
+        "CREATE TABLE IF NOT EXISTS oauth_refresh_token (" +
+            "token_id VARCHAR(256) NOT NULL PRIMARY KEY, " +
+            "token BLOB, " +
+            "authentication BLOB, " +
+            "expiration TIMESTAMP)",
+        "ALTER TABLE oauth_refresh_token ADD COLUMN IF NOT EXISTS expiration TIMESTAMP",
+        "CREATE INDEX IF NOT EXISTS ix_oauth_refresh_token_expiration ON oauth_refresh_token (expiration)"};
+
+    /**
+     * Stores an access token along with when it expires
+     */
+    private static final String INSERT_ACCESS_TOKEN = "INSERT INTO oauth_access_token " +
+        "(token_id, token, authentication_id, user_name, client_id, authentication, refresh_token, expiration) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Stores a refresh token along with when it expires
+     */
+    private static final String INSERT_REFRESH_TOKEN = "INSERT INTO oauth_refresh_token " +
+        "(token_id, token, authentication, expiration) " +
+        "VALUES (?, ?, ?, ?)";
+
+    /**
+     * Removes every access token that expired before the given time
+     */
+    private static final String DELETE_EXPIRED_ACCESS_TOKENS = "DELETE FROM oauth_access_token WHERE expiration < ?";
+
+    /**
+     * Removes every refresh token that expired before the given time
+     */
+    private static final String DELETE_EXPIRED_REFRESH_TOKENS = "DELETE FROM oauth_refresh_token WHERE expiration < ?";
+
+    /**
+     * Removes every refresh token that never expires and that no access token was issued with any more
+     */
+    private static final String DELETE_UNREFERENCED_REFRESH_TOKENS = "DELETE FROM oauth_refresh_token r " +
+        "WHERE r.expiration IS NULL " +
+        "AND NOT EXISTS (SELECT 1 FROM oauth_access_token a WHERE a.refresh_token = r.token_id)";
+
+    /**
+     * The column types used when storing an access token
+     */
+    private static final int[] INSERT_ACCESS_TOKEN_TYPES = {
+        Types.VARCHAR,
+        Types.BLOB,
+        Types.VARCHAR,
+        Types.VARCHAR,
+        Types.VARCHAR,
+        Types.BLOB,
+        Types.VARCHAR,
+        Types.TIMESTAMP};
+
+    /**
+     * The column types used when storing a refresh token
+     */
+    private static final int[] INSERT_REFRESH_TOKEN_TYPES = {
+        Types.VARCHAR,
+        Types.BLOB,
+        Types.BLOB,
+        Types.TIMESTAMP};
+
+    /**
+     * Used to run our own statements against the token tables
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Works out which authentication a token belongs to. This must be the same generator the parent class uses.
+     */
+    private AuthenticationKeyGenerator authenticationKeyGenerator = new DefaultAuthenticationKeyGenerator();
+
+    /**
+     * Creates the token store and, if needed, its tables
+     *
+     * @param dataSource The datasource where the tokens are kept
+     */
+    public ExpiringJdbcTokenStore(DataSource dataSource)
+    {
+        super(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.batchUpdate(CREATE_SCHEMA);
+    }
+
+    /**
+     * Sets how tokens are matched to their authentication, both here and in the parent class
+     *
+     * @param authenticationKeyGenerator the generator to use
+     */
+    @Override
+    public void setAuthenticationKeyGenerator(AuthenticationKeyGenerator authenticationKeyGenerator)
+    {
+        super.setAuthenticationKeyGenerator(authenticationKeyGenerator);
+        this.authenticationKeyGenerator = authenticationKeyGenerator;
+    }
+
+    /**
+     * Stores the access token the same way the parent class does, also recording when it expires.
+     * Tokens that never expire have no expiration and are never swept.
+     *
+     * @param token          The access token to store
+     * @param authentication The authentication the token was issued for
+     */
+    @Override
+    public void storeAccessToken(
+        OAuth2AccessToken token,
+        OAuth2Authentication authentication)
+    {
+        String refreshToken = null;
+        if (token.getRefreshToken() != null)
+        {
+            refreshToken = token.getRefreshToken()
+                .getValue();
+        }
+
+        if (readAccessToken(token.getValue()) != null)
+        {
+            removeAccessToken(token.getValue());
+        }
+
+        Timestamp expiration = null;
+        if (token.getExpiration() != null)
+        {
+            expiration = new Timestamp(token.getExpiration()
+                .getTime());
+        }
+
+        jdbcTemplate.update(INSERT_ACCESS_TOKEN,
+            new Object[]{extractTokenKey(token.getValue()),
+                new SqlLobValue(serializeAccessToken(token)),
+                authenticationKeyGenerator.extractKey(authentication),
+                authentication.isClientOnly() ? null : authentication.getName(),
+                authentication.getOAuth2Request()
+                    .getClientId(),
+                new SqlLobValue(serializeAuthentication(authentication)),
+                extractTokenKey(refreshToken),
+                expiration},
+            INSERT_ACCESS_TOKEN_TYPES);
+    }
+
+    /**
+     * Stores the refresh token the same way the parent class does, also recording when it expires.
+     * Refresh tokens that never expire have no expiration and are swept once no access token refers to them.
+     *
+     * @param refreshToken   The refresh token to store
+     * @param authentication The authentication the token was issued for
+     */
+    @Override
+    public void storeRefreshToken(
+        OAuth2RefreshToken refreshToken,
+        OAuth2Authentication authentication)
+    {
+        Timestamp expiration = null;
+        if (refreshToken instanceof ExpiringOAuth2RefreshToken && ((ExpiringOAuth2RefreshToken) refreshToken).getExpiration() != null)
+        {
+            expiration = new Timestamp(((ExpiringOAuth2RefreshToken) refreshToken).getExpiration()
+                .getTime());
+        }
+
+        jdbcTemplate.update(INSERT_REFRESH_TOKEN,
+            new Object[]{extractTokenKey(refreshToken.getValue()),
+                new SqlLobValue(serializeRefreshToken(refreshToken)),
+                new SqlLobValue(serializeAuthentication(authentication)),
+                expiration},
+            INSERT_REFRESH_TOKEN_TYPES);
+    }
+
+    /**
+     * Removes all access tokens that have expired
+     *
+     * @return the number (int) of access tokens removed
+     */
+    public int removeExpiredAccessTokens()
+    {
+        return jdbcTemplate.update(DELETE_EXPIRED_ACCESS_TOKENS,
+            new Timestamp(System.currentTimeMillis()));
+    }
+
+    /**
+     * Removes all refresh tokens that have expired, and those that never expire but that no access token refers to.
+     * Run after removing expired access tokens, so the refresh tokens only they referred to go in the same sweep.
+     *
+     * @return the number (int) of refresh tokens removed
+     */
+    public int removeExpiredRefreshTokens()
+    {
+        return jdbcTemplate.update(DELETE_EXPIRED_REFRESH_TOKENS,
+            new Timestamp(System.currentTimeMillis())) + jdbcTemplate.update(DELETE_UNREFERENCED_REFRESH_TOKENS);
+    }
+}
@@ -0,0 +1,75 @@
+package com.lambdaschool.usermodel.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Keeps access tokens in the application's datasource instead of in memory, so signed on users stay signed on
+ * across restarts and expired tokens do not pile up on the heap.
+ * Turned on by setting usermodel.security.token-store=jdbc
+ * <p>
+ * Recently used tokens are cached in memory in front of the database and expired tokens are removed
+ * from the database in the background, along with refresh tokens that expired or are no longer used.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "usermodel.security.token-store",
+    havingValue = "jdbc")
+public class JdbcTokenStoreConfig
+{
+    /**
+     * The database backed token store. The cache in front of it is what the rest of the application sees.
+     */
+    private final ExpiringJdbcTokenStore jdbcTokenStore;
+
+    /**
+     * Creates the database backed token store, and its tables if needed
+     *
+     * @param dataSource The datasource where the tokens are kept
+     */
+    public JdbcTokenStoreConfig(DataSource dataSource)
+    {
+        jdbcTokenStore = new ExpiringJdbcTokenStore(dataSource);
+    }
+
+    /**
+     * The token store used by the authorization and resource servers
+     *
+     * @param maximumSize   The most access tokens (long) kept in memory at any one time
+     * @param expireAfter   How long (seconds) an access token is kept in memory after being read from the database
+     * @param meterRegistry The registry where the cache metrics are published
+     * @return The database backed token store with an in memory cache in front of it
+     */
+    @Bean
+    public TokenStore tokenStore(
+        @Value("${usermodel.security.token-cache.maximum-size:100000}")
+            long maximumSize,
+        @Value("${usermodel.security.token-cache.expire-after-write-seconds:60}")
+            long expireAfter,
+        MeterRegistry meterRegistry)
+    {
+        return new CachingTokenStore(jdbcTokenStore,
+            maximumSize,
+            Duration.ofSeconds(expireAfter),
+            meterRegistry);
+    }
+
+    /**
+     * Removes expired access and refresh tokens from the database every so often
+     */
+    @Scheduled(fixedDelayString = "${usermodel.security.token-sweep-interval-ms:60000}")
+    public void removeExpiredTokens()
+    {
+        jdbcTokenStore.removeExpiredAccessTokens();
+        jdbcTokenStore.removeExpiredRefreshTokens();
+    }
+}
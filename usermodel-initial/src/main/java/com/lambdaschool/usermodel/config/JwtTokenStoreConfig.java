@@ -0,0 +1,113 @@
+package com.lambdaschool.usermodel.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.store.KeyStoreKeyFactory;
+
+/**
+ * Issues signed, self contained access tokens. A token carries the user name and authorities it was issued for,
+ * so the resource server checks it by its signature alone and no token store is looked up per request.
+ * Turned on by setting usermodel.security.token-store=jwt
+ * <p>
+ * Tokens are signed with an RSA key pair when usermodel.security.jwt.key-store is set,
+ * otherwise with the shared HMAC key usermodel.security.jwt.signing-key.
+ * <p>
+ * Signing out puts the token on an in memory revocation list. The list is not shared between application instances,
+ * so keep the access token validity short when running more than one.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "usermodel.security.token-store",
+    havingValue = "jwt")
+public class JwtTokenStoreConfig
+{
+    /**
+     * The ids of tokens revoked before they expired
+     */
+    private final TokenRevocationList revocationList;
+
+    /**
+     * Creates the revocation list and publishes its size as the metric usermodel.tokens.revoked
+     *
+     * @param filterBits    The number of bits (int) in the bloom filter in front of the revocation list
+     * @param meterRegistry The registry where the metric is published
+     */
+    public JwtTokenStoreConfig(
+        @Value("${usermodel.security.jwt.revocation-filter-bits:1048576}")
+            int filterBits,
+        MeterRegistry meterRegistry)
+    {
+        revocationList = new TokenRevocationList(filterBits);
+        Gauge.builder("usermodel.tokens.revoked",
+            revocationList,
+            TokenRevocationList::size)
+            .description("Signed access tokens revoked before they expired")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Signs new access tokens and checks the signature of the ones presented
+     *
+     * @param signingKey       The shared HMAC key, used when no key store is given
+     * @param keyStore         The key store holding the RSA key pair, if any
+     * @param keyStorePassword The password of the key store
+     * @param keyAlias         The alias of the key pair in the key store
+     * @return The converter between access tokens and their signed form
+     */
+    @Bean
+    public JwtAccessTokenConverter accessTokenConverter(
+        @Value("${usermodel.security.jwt.signing-key:}")
+            String signingKey,
+        @Value("${usermodel.security.jwt.key-store:#{null}}")
+            Resource keyStore,
+        @Value("${usermodel.security.jwt.key-store-password:}")
+            String keyStorePassword,
+        @Value("${usermodel.security.jwt.key-alias:}")
+            String keyAlias)
+    {
+        JwtAccessTokenConverter converter = new JwtAccessTokenConverter();
+        if (keyStore != null)
+        {
+            converter.setKeyPair(new KeyStoreKeyFactory(keyStore,
+                keyStorePassword.toCharArray()).getKeyPair(keyAlias));
+        } else if (!signingKey.isEmpty())
+        {
+            converter.setSigningKey(signingKey);
+        } else
+        {
+            throw new IllegalStateException("usermodel.security.jwt.signing-key or usermodel.security.jwt.key-store must be set to use signed tokens");
+        }
+        return converter;
+    }
+
+    /**
+     * The token store used by the authorization and resource servers
+     *
+     * @param accessTokenConverter The converter that signs and checks the tokens
+     * @return A token store that reads signed tokens and remembers revoked ones
+     */
+    @Bean
+    public TokenStore tokenStore(JwtAccessTokenConverter accessTokenConverter)
+    {
+        return new RevocableJwtTokenStore(accessTokenConverter,
+            revocationList);
+    }
+
+    /**
+     * Forgets revoked tokens once they have expired anyway
+     */
+    @Scheduled(fixedDelayString = "${usermodel.security.token-sweep-interval-ms:60000}")
+    public void removeExpiredRevocations()
+    {
+        revocationList.removeExpired();
+    }
+}
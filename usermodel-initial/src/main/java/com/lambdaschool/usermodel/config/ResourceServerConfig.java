@@ -53,6 +53,9 @@ public class ResourceServerConfig
                 "/webjars/**",
                 "/createnewuser")
             .permitAll()
+            // matched as Spring MVC maps the URL, so /users/export/ is restricted as well
+            .mvcMatchers("/users/export")
+            .hasAnyRole("ADMIN")
             .antMatchers(HttpMethod.POST,
                 "/users/**")
             .hasAnyRole("ADMIN")
@@ -67,7 +70,8 @@ public class ResourceServerConfig
                 "/oauth/revoke-token",
                 "/logout")
             .authenticated()
-            .antMatchers("/roles/**")
+            .antMatchers("/roles/**",
+                "/actuator/**")
             .hasAnyRole("ADMIN")
             .anyRequest().denyAll() // deny any endpoint that is not explicitly given access rights
             .and()
@@ -0,0 +1,131 @@
+package com.lambdaschool.usermodel.config;
+
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.AccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.store.JwtTokenStore;
+
+/**
+ * A token store for signed access tokens. Nothing is stored: a token is checked by its signature and carries
+ * the user name and authorities it was issued for. Removing a token puts its id on a revocation list,
+ * which is checked in memory whenever a token is read.
+ */
+public class RevocableJwtTokenStore
+    extends JwtTokenStore
+{
+    /**
+     * The ids of tokens removed before they expired
+     */
+    private final TokenRevocationList revocationList;
+
+    /**
+     * Creates the token store
+     *
+     * @param jwtTokenEnhancer The converter that signs and checks the tokens
+     * @param revocationList   The ids of tokens removed before they expired
+     */
+    public RevocableJwtTokenStore(
+        JwtAccessTokenConverter jwtTokenEnhancer,
+        TokenRevocationList revocationList)
+    {
+        super(jwtTokenEnhancer);
+        this.revocationList = revocationList;
+    }
+
+    /**
+     * Reads the token from its signed value
+     *
+     * @param tokenValue The signed token
+     * @return The access token, or null if it was revoked
+     */
+    @Override
+    public OAuth2AccessToken readAccessToken(String tokenValue)
+    {
+        OAuth2AccessToken token = super.readAccessToken(tokenValue);
+        if (isRevoked(token))
+        {
+            return null;
+        }
+        return token;
+    }
+
+    /**
+     * Reads the authentication carried by the token
+     *
+     * @param token The access token
+     * @return The authentication the token was issued for, or null if the token was revoked
+     */
+    @Override
+    public OAuth2Authentication readAuthentication(OAuth2AccessToken token)
+    {
+        if (isRevoked(token))
+        {
+            return null;
+        }
+        return super.readAuthentication(token.getValue());
+    }
+
+    /**
+     * Reads the authentication carried by the token
+     *
+     * @param token The signed token
+     * @return The authentication the token was issued for, or null if the token was revoked
+     */
+    @Override
+    public OAuth2Authentication readAuthentication(String token)
+    {
+        OAuth2AccessToken accessToken = readAccessToken(token);
+        if (accessToken == null)
+        {
+            return null;
+        }
+        return super.readAuthentication(token);
+    }
+
+    /**
+     * Revokes the token until it expires
+     *
+     * @param token The access token to revoke
+     */
+    @Override
+    public void removeAccessToken(OAuth2AccessToken token)
+    {
+        Long expiration = null;
+        if (token.getExpiration() != null)
+        {
+            expiration = token.getExpiration()
+                .getTime();
+        }
+        revocationList.revoke(tokenId(token),
+            expiration);
+    }
+
+    /**
+     * Tells whether the given token was revoked
+     *
+     * @param token The access token
+     * @return true if the token was revoked, otherwise false
+     */
+    private boolean isRevoked(OAuth2AccessToken token)
+    {
+        return token != null && revocationList.isRevoked(tokenId(token));
+    }
+
+    /**
+     * The id the token was issued with, or the token itself if it has no id
+     *
+     * @param token The access token
+     * @return the id of the token
+     */
+    private static String tokenId(OAuth2AccessToken token)
+    {
+        Object tokenId = token.getAdditionalInformation()
+            .get(AccessTokenConverter.JTI);
+        if (tokenId == null)
+        {
+            return token.getValue();
+        }
+        return tokenId.toString();
+    }
+}
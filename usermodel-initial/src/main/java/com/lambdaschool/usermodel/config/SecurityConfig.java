@@ -1,6 +1,9 @@
 package com.lambdaschool.usermodel.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -10,10 +13,14 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.provider.token.TokenStore;
 import org.springframework.security.oauth2.provider.token.store.InMemoryTokenStore;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * This class allows us to set standard security protocols to be used throughout the application,
  * such as password encoding, location of token store, our implementation of users, among others
@@ -25,6 +32,11 @@ import org.springframework.security.oauth2.provider.token.store.InMemoryTokenSto
 public class SecurityConfig
     extends WebSecurityConfigurerAdapter
 {
+    /**
+     * The id stored with passwords hashed using BCrypt
+     */
+    private static final String BCRYPT = "bcrypt";
+
     /**
      * Allows us to customize the Authentication Manager. Normally, as we do here, we just take the defaults.
      *
@@ -64,23 +76,71 @@ public class SecurityConfig
 
     /**
      * We will store our token in memory. This way when the application exists all access tokens are invalidated.
+     * This is the default. Setting usermodel.security.token-store=jdbc keeps the tokens in the database instead, see JdbcTokenStoreConfig.
      *
      * @return A token store configured to be used in memory
      */
     @Bean
+    @ConditionalOnProperty(name = "usermodel.security.token-store",
+        havingValue = "memory",
+        matchIfMissing = true)
     public TokenStore tokenStore()
     {
         return new InMemoryTokenStore();
     }
 
     /**
-     * Set our preferred encoder for our password
+     * The BCrypt cost (log rounds, 4 to 31) used when hashing passwords. Each step up doubles the time to hash and check a password.
+     */
+    @Value("${usermodel.security.bcrypt-strength:10}")
+    private int bcryptStrength;
+
+    /**
+     * The number of passwords hashed or checked at once. 0 means one per processor.
+     */
+    @Value("${usermodel.security.password-encoder.threads:0}")
+    private int passwordEncoderThreads;
+
+    /**
+     * The number of passwords that can wait to be hashed or checked before requests are turned away
+     */
+    @Value("${usermodel.security.password-encoder.queue-capacity:100}")
+    private int passwordEncoderQueueCapacity;
+
+    /**
+     * Connects the password encoder to the registry where its metrics are published
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Set our preferred encoder for our password.
+     * Passwords are hashed and checked on their own bounded pool of threads, rather than on the request threads.
+     * The user service uses the same encoder to encrypt passwords when users are saved.
+     * <p>
+     * Hashes are stored with the id of the scheme used, for example {bcrypt}$2a$10$..., so the scheme and its settings
+     * can change without invalidating existing passwords. Hashes stored before ids were added are checked with BCrypt.
+     * Whenever a stored hash uses another scheme or a lower BCrypt cost than configured, the password is hashed again
+     * the next time that user signs on.
      *
      * @return A password will be encoded using the standard BCrypt method
      */
     @Bean
     public PasswordEncoder encoder()
     {
-        return new BCryptPasswordEncoder();
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT,
+            new BCryptPasswordEncoder(bcryptStrength));
+        DelegatingPasswordEncoder delegatingPasswordEncoder = new DelegatingPasswordEncoder(BCRYPT,
+            encoders);
+        delegatingPasswordEncoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder(bcryptStrength));
+
+        int threads = passwordEncoderThreads > 0 ? passwordEncoderThreads : Runtime.getRuntime()
+            .availableProcessors();
+        PasswordEncoder encoder = new BoundedPasswordEncoder(delegatingPasswordEncoder,
+            threads,
+            passwordEncoderQueueCapacity,
+            meterRegistry);
+        return encoder;
     }
 }
@@ -0,0 +1,73 @@
+package com.lambdaschool.usermodel.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lambdaschool.usermodel.exceptions.ServiceUnavailableException;
+import com.lambdaschool.usermodel.models.ErrorDetail;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Reports a ServiceUnavailableException thrown while a request is in the security filters, for example while checking
+ * the client secret, as 503 Service Unavailable. Exceptions thrown in controllers are reported by RestExceptionHandler.
+ * Runs just after the CORS filter so the CORS headers are already set.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class ServiceUnavailableFilter
+    implements Filter
+{
+    /**
+     * Used to write the error details
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public void doFilter(
+        ServletRequest servletRequest,
+        ServletResponse servletResponse,
+        FilterChain filterChain)
+        throws
+        IOException,
+        ServletException
+    {
+        try
+        {
+            filterChain.doFilter(servletRequest,
+                servletResponse);
+        } catch (ServiceUnavailableException sue)
+        {
+            HttpServletResponse response = (HttpServletResponse) servletResponse;
+            if (response.isCommitted())
+            {
+                throw sue;
+            }
+
+            ErrorDetail errorDetail = new ErrorDetail();
+            errorDetail.setTimestamp(new Date());
+            errorDetail.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            errorDetail.setTitle("Service Unavailable");
+            errorDetail.setDetail(sue.getMessage());
+            errorDetail.setDeveloperMessage(sue.getClass()
+                .getName());
+
+            response.reset();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER,
+                "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(),
+                errorDetail);
+        }
+    }
+}
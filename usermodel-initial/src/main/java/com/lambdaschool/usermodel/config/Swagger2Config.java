@@ -1,5 +1,6 @@
 package com.lambdaschool.usermodel.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
@@ -15,8 +16,13 @@ import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
 /**
  * Configures the default Swagger Documentation
+ * <p>
+ * Setting usermodel.swagger.enabled=false leaves Swagger out altogether, so springfox never scans the controllers.
  */
 @Configuration
+@ConditionalOnProperty(name = "usermodel.swagger.enabled",
+    havingValue = "true",
+    matchIfMissing = true)
 @EnableSwagger2
 @Import(BeanValidatorPluginsConfiguration.class)
 public class Swagger2Config
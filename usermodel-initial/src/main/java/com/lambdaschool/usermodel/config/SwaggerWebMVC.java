@@ -1,5 +1,6 @@
 package com.lambdaschool.usermodel.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -7,8 +8,12 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 /**
  * The application turns off any automatic web page generate done by Spring. This is done to improve exception handling.
  * However, we do need some web page generate done for Swagger, so we do that here.
+ * The pages are left out when Swagger is turned off with usermodel.swagger.enabled=false.
  */
 @Configuration
+@ConditionalOnProperty(name = "usermodel.swagger.enabled",
+    havingValue = "true",
+    matchIfMissing = true)
 public class SwaggerWebMVC
     implements WebMvcConfigurer
 {
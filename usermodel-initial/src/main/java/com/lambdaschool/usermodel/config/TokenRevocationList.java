@@ -0,0 +1,184 @@
+package com.lambdaschool.usermodel.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Remembers the ids of signed access tokens that were revoked before they expired.
+ * <p>
+ * Signed tokens are checked on every request, and nearly all of them were never revoked. A small bloom filter
+ * answers "certainly not revoked" for those without touching the exact set. Only tokens the filter might contain
+ * are looked up in the exact set, so a false positive costs one hash lookup and never rejects a valid token.
+ * <p>
+ * Entries are kept until their token expires. Tokens that never expire stay revoked until the application restarts.
+ * The list is kept in memory by each application instance.
+ */
+public class TokenRevocationList
+{
+    /**
+     * How many bits of the filter each token id sets
+     */
+    private static final int HASHES = 4;
+
+    /**
+     * Used as the expiration of tokens that never expire
+     */
+    private static final long NEVER = Long.MAX_VALUE;
+
+    /**
+     * The number of bits in the filter less one. The number of bits is a power of two.
+     */
+    private final int mask;
+
+    /**
+     * The revoked token ids along with when (milliseconds since the epoch) their tokens expire
+     */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    /**
+     * The bloom filter over the revoked token ids. Replaced, never cleared, when expired ids are removed.
+     */
+    private volatile AtomicLongArray filter;
+
+    /**
+     * Creates an empty revocation list
+     *
+     * @param filterBits The number of bits (int) in the bloom filter, rounded up to a power of two.
+     *                   About ten bits per revoked token keeps false positives near one percent.
+     */
+    public TokenRevocationList(int filterBits)
+    {
+        int bits = Integer.highestOneBit(Math.max(64,
+            filterBits) - 1) << 1;
+        mask = bits - 1;
+        filter = new AtomicLongArray(bits / 64);
+    }
+
+    /**
+     * Revokes the token with the given id
+     *
+     * @param tokenId    The id of the token
+     * @param expiration When (milliseconds since the epoch) the token expires, or null if it never does
+     */
+    public synchronized void revoke(
+        String tokenId,
+        Long expiration)
+    {
+        revoked.put(tokenId,
+            expiration == null ? NEVER : expiration);
+        add(filter,
+            tokenId);
+    }
+
+    /**
+     * Tells whether the token with the given id was revoked
+     *
+     * @param tokenId The id of the token
+     * @return true if the token was revoked, otherwise false
+     */
+    public boolean isRevoked(String tokenId)
+    {
+        return mightContain(filter,
+            tokenId) && revoked.containsKey(tokenId);
+    }
+
+    /**
+     * Forgets the tokens that have since expired and rebuilds the filter from the tokens that remain
+     */
+    public synchronized void removeExpired()
+    {
+        long now = System.currentTimeMillis();
+        if (revoked.values()
+            .removeIf(expiration -> expiration < now))
+        {
+            AtomicLongArray rebuilt = new AtomicLongArray(filter.length());
+            for (String tokenId : revoked.keySet())
+            {
+                add(rebuilt,
+                    tokenId);
+            }
+            filter = rebuilt;
+        }
+    }
+
+    /**
+     * The number of revoked tokens that have not yet expired
+     *
+     * @return the number (int) of tokens on the list
+     */
+    public int size()
+    {
+        return revoked.size();
+    }
+
+    /**
+     * Sets the bits for the given token id
+     *
+     * @param bits    The filter to change
+     * @param tokenId The id of the token
+     */
+    private void add(
+        AtomicLongArray bits,
+        String tokenId)
+    {
+        long hash = hash(tokenId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++)
+        {
+            int bit = (h1 + i * h2) & mask;
+            long word;
+            long updated;
+            do
+            {
+                word = bits.get(bit >>> 6);
+                updated = word | (1L << bit);
+            } while (word != updated && !bits.compareAndSet(bit >>> 6,
+                word,
+                updated));
+        }
+    }
+
+    /**
+     * Tells whether all of the bits for the given token id are set
+     *
+     * @param bits    The filter to check
+     * @param tokenId The id of the token
+     * @return false if the token id was certainly never added, otherwise true
+     */
+    private boolean mightContain(
+        AtomicLongArray bits,
+        String tokenId)
+    {
+        long hash = hash(tokenId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++)
+        {
+            int bit = (h1 + i * h2) & mask;
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A 64 bit FNV-1a hash of the token id, split by the callers into two 32 bit hashes
+     *
+     * @param tokenId The id of the token
+     * @return the hash (long) of the token id
+     */
+    private static long hash(String tokenId)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < tokenId.length(); i++)
+        {
+            hash ^= tokenId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
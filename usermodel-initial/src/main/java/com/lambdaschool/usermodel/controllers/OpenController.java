@@ -4,16 +4,17 @@ import com.lambdaschool.usermodel.models.User;
 import com.lambdaschool.usermodel.models.UserMinimum;
 import com.lambdaschool.usermodel.models.UserRoles;
 import com.lambdaschool.usermodel.services.RoleService;
+import com.lambdaschool.usermodel.services.TokenService;
 import com.lambdaschool.usermodel.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.*;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import springfox.documentation.annotations.ApiIgnore;
 
@@ -21,9 +22,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 /**
@@ -45,6 +44,12 @@ public class OpenController
     @Autowired
     private RoleService roleService;
 
+    /**
+     * A method in this controller signs on the newly created user so needs access to Token Services to do this.
+     */
+    @Autowired
+    private TokenService tokenService;
+
     /**
      * This endpoint always anyone to create an account with the default role of USER. That role is hardcoded in this method.
      *
@@ -74,7 +79,7 @@ public class OpenController
         // add the default role of user
         Set<UserRoles> newRoles = new HashSet<>();
         newRoles.add(new UserRoles(newuser,
-            roleService.findByName("user")));
+            roleService.findReferenceByName("user")));
         newuser.setRoles(newRoles);
 
         newuser = userService.save(newuser);
@@ -88,35 +93,8 @@ public class OpenController
         responseHeaders.setLocation(newUserURI);
 
         // return the access token
-        // To get the access token, surf to the endpoint /login just as if a client had done this.
-        RestTemplate restTemplate = new RestTemplate();
-        String requestURI = "http://localhost" + ":" + httpServletRequest.getLocalPort() + "/login";
-
-        List<MediaType> acceptableMediaTypes = new ArrayList<>();
-        acceptableMediaTypes.add(MediaType.APPLICATION_JSON);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-        headers.setAccept(acceptableMediaTypes);
-        headers.setBasicAuth(System.getenv("OAUTHCLIENTID"),
-            System.getenv("OAUTHCLIENTSECRET"));
-
-        MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
-        map.add("grant_type",
-            "password");
-        map.add("scope",
-            "read write trust");
-        map.add("username",
-            newminuser.getUsername());
-        map.add("password",
-            newminuser.getPassword());
-
-        HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(map,
-            headers);
-
-        String theToken = restTemplate.postForObject(requestURI,
-            request,
-            String.class);
+        // The token is issued in process, just as if a client had signed on at the endpoint /login.
+        OAuth2AccessToken theToken = tokenService.createAccessToken(newuser.getUsername());
 
         return new ResponseEntity<>(theToken,
             responseHeaders,
@@ -1,12 +1,15 @@
 package com.lambdaschool.usermodel.controllers;
 
 import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.models.RoleSummary;
+import com.lambdaschool.usermodel.services.HelperFunctions;
 import com.lambdaschool.usermodel.services.RoleService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.validation.Valid;
@@ -32,40 +35,103 @@ public class RolesController
     RoleService roleService;
 
     /**
-     * List of all roles
+     * Used to answer conditional GETs from the version of a resource
+     */
+    @Autowired
+    private HelperFunctions helperFunctions;
+
+    /**
+     * List of all roles. The response carries an ETag. If the client sends it back
+     * and no role or user has changed since, the response is 304 Not Modified with no body, and no role is read.
      * <br>Example: <a href="http://localhost:2019/roles/roles">http://localhost:2019/roles/roles</a>
      *
-     * @return JSON List of all the roles and their associated users
+     * @param webRequest The request, checked for If-None-Match
+     * @return JSON List of all the roles and their associated users, or nothing if the client's copy is current
      * @see RoleService#findAll() RoleService.findAll()
+     * @see RoleService#findVersion() RoleService.findVersion()
      */
     @GetMapping(value = "/roles",
         produces = "application/json")
-    public ResponseEntity<?> listRoles()
+    public ResponseEntity<?> listRoles(ServletWebRequest webRequest)
     {
+        if (helperFunctions.isNotModified(roleService.findVersion(),
+            webRequest))
+        {
+            return null;
+        }
+
         List<Role> allRoles = roleService.findAll();
         return new ResponseEntity<>(allRoles,
             HttpStatus.OK);
     }
 
     /**
-     * The Role referenced by the given primary key
+     * List of the summaries, primary key and name, of all roles. Only those columns are read.
+     * <br>Example: <a href="http://localhost:2019/roles/roles?view=summary">http://localhost:2019/roles/roles?view=summary</a>
+     *
+     * @return JSON List of the summaries of all the roles
+     * @see RoleService#findAllSummaries() RoleService.findAllSummaries()
+     */
+    @GetMapping(value = "/roles",
+        params = "view=summary",
+        produces = "application/json")
+    public ResponseEntity<?> listRoleSummaries()
+    {
+        List<RoleSummary> allRoles = roleService.findAllSummaries();
+        return new ResponseEntity<>(allRoles,
+            HttpStatus.OK);
+    }
+
+    /**
+     * The Role referenced by the given primary key. The response carries an ETag.
+     * If the client sends it back and neither the role nor its users have changed since,
+     * the response is 304 Not Modified with no body, and the role is never read.
      * <br>Example: <a href="http://localhost:2019/roles/role/3">http://localhost:2019/roles/role/3</a>
      *
-     * @param roleId The primary key (long) of the role you seek
-     * @return JSON object of the role you seek
+     * @param roleId     The primary key (long) of the role you seek
+     * @param webRequest The request, checked for If-None-Match
+     * @return JSON object of the role you seek, or nothing if the client's copy is current
      * @see RoleService#findRoleById(long) RoleService.findRoleById(long)
+     * @see RoleService#findVersionById(long) RoleService.findVersionById(long)
      */
     @GetMapping(value = "/role/{roleId}",
         produces = "application/json")
     public ResponseEntity<?> getRoleById(
         @PathVariable
-            Long roleId)
+            Long roleId,
+        ServletWebRequest webRequest)
     {
+        if (helperFunctions.isNotModified(roleService.findVersionById(roleId),
+            webRequest))
+        {
+            return null;
+        }
+
         Role r = roleService.findRoleById(roleId);
         return new ResponseEntity<>(r,
             HttpStatus.OK);
     }
 
+    /**
+     * The summary, primary key and name, of the Role referenced by the given primary key
+     * <br>Example: <a href="http://localhost:2019/roles/role/3?view=summary">http://localhost:2019/roles/role/3?view=summary</a>
+     *
+     * @param roleId The primary key (long) of the role you seek
+     * @return JSON object of the summary of the role you seek
+     * @see RoleService#findSummaryById(long) RoleService.findSummaryById(long)
+     */
+    @GetMapping(value = "/role/{roleId}",
+        params = "view=summary",
+        produces = "application/json")
+    public ResponseEntity<?> getRoleSummaryById(
+        @PathVariable
+            Long roleId)
+    {
+        RoleSummary r = roleService.findSummaryById(roleId);
+        return new ResponseEntity<>(r,
+            HttpStatus.OK);
+    }
+
     /**
      * The Role with the given name
      * <br>Example: <a href="http://localhost:2019/roles/role/name/data">http://localhost:2019/roles/role/name/data</a>
@@ -85,6 +151,26 @@ public class RolesController
             HttpStatus.OK);
     }
 
+    /**
+     * The summary, primary key and name, of the Role with the given name
+     * <br>Example: <a href="http://localhost:2019/roles/role/name/data?view=summary">http://localhost:2019/roles/role/name/data?view=summary</a>
+     *
+     * @param roleName The name of the role you seek
+     * @return JSON object of the summary of the role you seek
+     * @see RoleService#findSummaryByName(String) RoleService.findSummaryByName(String)
+     */
+    @GetMapping(value = "/role/name/{roleName}",
+        params = "view=summary",
+        produces = "application/json")
+    public ResponseEntity<?> getRoleSummaryByName(
+        @PathVariable
+            String roleName)
+    {
+        RoleSummary r = roleService.findSummaryByName(roleName);
+        return new ResponseEntity<>(r,
+            HttpStatus.OK);
+    }
+
     /**
      * Given a complete Role object, create a new Role record
      * <br>Example: <a href="http://localhost:2019/roles/role">http://localhost:2019/roles/role</a>
@@ -123,7 +209,10 @@ public class RolesController
      *
      * @param roleid  The primary key (long) of the role you wish to update
      * @param newRole The new name (String) for the role
+     * @param ifMatch Optional. The ETag from GET /roles/role/{roleid}. If the role has changed since, it is not renamed
+     *                and the status is Precondition Failed.
      * @return Status of OK
+     * @see RoleService#update(long, Role, String) RoleService.update(long, Role, String)
      */
     @PutMapping(value = "/role/{roleid}",
         consumes = {"application/json"})
@@ -132,10 +221,14 @@ public class RolesController
             long roleid,
         @Valid
         @RequestBody
-            Role newRole)
+            Role newRole,
+        @RequestHeader(value = HttpHeaders.IF_MATCH,
+            required = false)
+            String ifMatch)
     {
         newRole = roleService.update(roleid,
-            newRole);
+            newRole,
+            ifMatch);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 }
@@ -1,20 +1,43 @@
 package com.lambdaschool.usermodel.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.lambdaschool.usermodel.exceptions.BadRequestException;
 import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.models.UserExportColumn;
+import com.lambdaschool.usermodel.models.UserImportResult;
+import com.lambdaschool.usermodel.models.UserSummary;
+import com.lambdaschool.usermodel.services.HelperFunctions;
+import com.lambdaschool.usermodel.services.UserExportService;
+import com.lambdaschool.usermodel.services.UserImportService;
 import com.lambdaschool.usermodel.services.UserService;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * The entry point for clients to access user data
@@ -30,40 +53,204 @@ public class UserController
     private UserService userService;
 
     /**
-     * Returns a list of all users
+     * Using the user import service to add users in bulk
+     */
+    @Autowired
+    private UserImportService userImportService;
+
+    /**
+     * Using the user export service to stream all users out
+     */
+    @Autowired
+    private UserExportService userExportService;
+
+    /**
+     * Used to answer conditional GETs from the version of a resource
+     */
+    @Autowired
+    private HelperFunctions helperFunctions;
+
+    /**
+     * The Jackson object mapper configured by Spring. Used to stream users directly to the response.
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * The number of users read from the database at a time when streaming the list of all users
+     */
+    @Value("${usermodel.users.page-size:500}")
+    private int pageSize;
+
+    /**
+     * The media type of CSV bodies
+     */
+    private static final MediaType TEXT_CSV = MediaType.valueOf("text/csv");
+
+    /**
+     * The media type of newline delimited JSON bodies
+     */
+    private static final MediaType APPLICATION_NDJSON = MediaType.valueOf("application/x-ndjson");
+
+    /**
+     * Returns a list of all users. The list is streamed to the client one page at a time so the whole table is
+     * never held in memory. Using the after parameter, a client can resume the list from a given user id.
      * <br>Example: <a href="http://localhost:2019/users/users">http://localhost:2019/users/users</a>
+     * <br>Example: <a href="http://localhost:2019/users/users?after=7">http://localhost:2019/users/users?after=7</a>
      *
-     * @return JSON list of all users with a status of OK
-     * @see UserService#findAll() UserService.findAll()
+     * @param after    The cursor, only users whose primary key is greater than this one are listed. Defaults to 0, all users.
+     * @param response The response to which the JSON list of users is written with a status of OK
+     * @throws IOException if the response cannot be written
+     * @see UserService#findAllAfter(long, int, java.util.function.Consumer) UserService.findAllAfter(long, int, Consumer)
      */
     @GetMapping(value = "/users",
         produces = "application/json")
-    public ResponseEntity<?> listAllUsers()
+    public void listAllUsers(
+        @RequestParam(defaultValue = "0")
+            long after,
+        HttpServletResponse response) throws
+                                      IOException
     {
-        List<User> myUsers = userService.findAll();
-        return new ResponseEntity<>(myUsers,
-            HttpStatus.OK);
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+
+        // flushing happens once per page, not once per user
+        ObjectWriter writer = objectMapper.writerFor(User.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (JsonGenerator generator = objectMapper.getFactory()
+            .createGenerator(response.getOutputStream()))
+        {
+            generator.writeStartArray();
+            userService.findAllAfter(after,
+                pageSize,
+                page ->
+                {
+                    try
+                    {
+                        for (User u : page)
+                        {
+                            writer.writeValue(generator,
+                                u);
+                        }
+                        generator.flush();
+                    } catch (IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            generator.writeEndArray();
+        } catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
     }
 
     /**
-     * Returns a single user based off a user id number
+     * Returns a list of the summaries of all users: their primary key, username and primary email.
+     * Only those columns are read, and the list is streamed the same way as the list of all users.
+     * <br>Example: <a href="http://localhost:2019/users/users?view=summary">http://localhost:2019/users/users?view=summary</a>
+     *
+     * @param after    The cursor, only users whose primary key is greater than this one are listed. Defaults to 0, all users.
+     * @param response The response to which the JSON list of user summaries is written with a status of OK
+     * @throws IOException if the response cannot be written
+     * @see UserService#findSummariesAfter(long, int, java.util.function.Consumer) UserService.findSummariesAfter(long, int, Consumer)
+     */
+    @GetMapping(value = "/users",
+        params = "view=summary",
+        produces = "application/json")
+    public void listAllUserSummaries(
+        @RequestParam(defaultValue = "0")
+            long after,
+        HttpServletResponse response) throws
+                                      IOException
+    {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+
+        ObjectWriter writer = objectMapper.writerFor(UserSummary.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (JsonGenerator generator = objectMapper.getFactory()
+            .createGenerator(response.getOutputStream()))
+        {
+            generator.writeStartArray();
+            userService.findSummariesAfter(after,
+                pageSize,
+                page ->
+                {
+                    try
+                    {
+                        for (UserSummary u : page)
+                        {
+                            writer.writeValue(generator,
+                                u);
+                        }
+                        generator.flush();
+                    } catch (IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            generator.writeEndArray();
+        } catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns a single user based off a user id number. The response carries an ETag.
+     * If the client sends it back and the user, their emails and roles have not changed since,
+     * the response is 304 Not Modified with no body, and the user is never read.
      * <br>Example: http://localhost:2019/users/user/7
      *
-     * @param userId The primary key of the user you seek
-     * @return JSON object of the user you seek
+     * @param userId     The primary key of the user you seek
+     * @param webRequest The request, checked for If-None-Match
+     * @return JSON object of the user you seek, or nothing if the client's copy is current
      * @see UserService#findUserById(long) UserService.findUserById(long)
+     * @see UserService#findVersionById(long) UserService.findVersionById(long)
      */
     @GetMapping(value = "/user/{userId}",
         produces = "application/json")
     public ResponseEntity<?> getUserById(
         @PathVariable
-            Long userId)
+            Long userId,
+        ServletWebRequest webRequest)
     {
+        if (helperFunctions.isNotModified(userService.findVersionById(userId),
+            webRequest))
+        {
+            return null;
+        }
+
         User u = userService.findUserById(userId);
         return new ResponseEntity<>(u,
             HttpStatus.OK);
     }
 
+    /**
+     * Returns the summary of a single user, their primary key, username and primary email, based off a user id number
+     * <br>Example: http://localhost:2019/users/user/7?view=summary
+     *
+     * @param userId The primary key of the user you seek
+     * @return JSON object of the summary of the user you seek
+     * @see UserService#findSummaryById(long) UserService.findSummaryById(long)
+     */
+    @GetMapping(value = "/user/{userId}",
+        params = "view=summary",
+        produces = "application/json")
+    public ResponseEntity<?> getUserSummaryById(
+        @PathVariable
+            Long userId)
+    {
+        UserSummary u = userService.findSummaryById(userId);
+        return new ResponseEntity<>(u,
+            HttpStatus.OK);
+    }
+
     /**
      * Return a user object based on a given username
      * <br>Example: <a href="http://localhost:2019/users/user/name/cinnamon">http://localhost:2019/users/user/name/cinnamon</a>
@@ -84,20 +271,131 @@ public class UserController
     }
 
     /**
-     * Returns a list of users whose username contains the given substring
-     * <br>Example: <a href="http://localhost:2019/users/user/name/like/da">http://localhost:2019/users/user/name/like/da</a>
+     * Return the summary of a user, their primary key, username and primary email, based on a given username
+     * <br>Example: <a href="http://localhost:2019/users/user/name/cinnamon?view=summary">http://localhost:2019/users/user/name/cinnamon?view=summary</a>
+     *
+     * @param userName the name of user (String) you seek
+     * @return JSON object of the summary of the user you seek
+     * @see UserService#findSummaryByName(String) UserService.findSummaryByName(String)
+     */
+    @GetMapping(value = "/user/name/{userName}",
+        params = "view=summary",
+        produces = "application/json")
+    public ResponseEntity<?> getUserSummaryByName(
+        @PathVariable
+            String userName)
+    {
+        UserSummary u = userService.findSummaryByName(userName);
+        return new ResponseEntity<>(u,
+            HttpStatus.OK);
+    }
+
+    /**
+     * Returns a page of the users whose username contains the given substring, in user id order
+     * <br>Example: <a href="http://localhost:2019/users/user/name/like/da?page=0&amp;size=25">http://localhost:2019/users/user/name/like/da?page=0&amp;size=25</a>
      *
      * @param userName Substring of the username for which you seek
+     * @param page     The page to return, starting at 0. Defaults to 0
+     * @param size     The number of users per page. Defaults to 25
      * @return A JSON list of users you seek
-     * @see UserService#findByNameContaining(String) UserService.findByNameContaining(String)
+     * @see UserService#findByNameContaining(String, int, int) UserService.findByNameContaining(String, int, int)
      */
     @GetMapping(value = "/user/name/like/{userName}",
         produces = "application/json")
     public ResponseEntity<?> getUserLikeName(
         @PathVariable
-            String userName)
+            String userName,
+        @RequestParam(defaultValue = "0")
+            int page,
+        @RequestParam(defaultValue = "25")
+            int size)
     {
-        List<User> u = userService.findByNameContaining(userName);
+        List<User> u = userService.findByNameContaining(userName,
+            page,
+            size);
+        return new ResponseEntity<>(u,
+            HttpStatus.OK);
+    }
+
+    /**
+     * Returns a page of the summaries of the users whose username contains the given substring, in user id order
+     * <br>Example: <a href="http://localhost:2019/users/user/name/like/da?view=summary">http://localhost:2019/users/user/name/like/da?view=summary</a>
+     *
+     * @param userName Substring of the username for which you seek
+     * @param page     The page to return, starting at 0. Defaults to 0
+     * @param size     The number of users per page. Defaults to 25
+     * @return A JSON list of the summaries of the users you seek
+     * @see UserService#findSummariesByNameContaining(String, int, int) UserService.findSummariesByNameContaining(String, int, int)
+     */
+    @GetMapping(value = "/user/name/like/{userName}",
+        params = "view=summary",
+        produces = "application/json")
+    public ResponseEntity<?> getUserSummaryLikeName(
+        @PathVariable
+            String userName,
+        @RequestParam(defaultValue = "0")
+            int page,
+        @RequestParam(defaultValue = "25")
+            int size)
+    {
+        List<UserSummary> u = userService.findSummariesByNameContaining(userName,
+            page,
+            size);
+        return new ResponseEntity<>(u,
+            HttpStatus.OK);
+    }
+
+    /**
+     * Returns a page of the users with an email, primary or not, containing the given substring, in user id order
+     * <br>Example: <a href="http://localhost:2019/users/user/email/like/local?page=0&amp;size=25">http://localhost:2019/users/user/email/like/local?page=0&amp;size=25</a>
+     *
+     * @param email Substring of the email for which you seek
+     * @param page  The page to return, starting at 0. Defaults to 0
+     * @param size  The number of users per page. Defaults to 25
+     * @return A JSON list of users you seek
+     * @see UserService#findByEmailContaining(String, int, int) UserService.findByEmailContaining(String, int, int)
+     */
+    @GetMapping(value = "/user/email/like/{email}",
+        produces = "application/json")
+    public ResponseEntity<?> getUserLikeEmail(
+        @PathVariable
+            String email,
+        @RequestParam(defaultValue = "0")
+            int page,
+        @RequestParam(defaultValue = "25")
+            int size)
+    {
+        List<User> u = userService.findByEmailContaining(email,
+            page,
+            size);
+        return new ResponseEntity<>(u,
+            HttpStatus.OK);
+    }
+
+    /**
+     * Returns a page of the summaries of the users with an email, primary or not, containing the given substring, in user id order
+     * <br>Example: <a href="http://localhost:2019/users/user/email/like/local?view=summary">http://localhost:2019/users/user/email/like/local?view=summary</a>
+     *
+     * @param email Substring of the email for which you seek
+     * @param page  The page to return, starting at 0. Defaults to 0
+     * @param size  The number of users per page. Defaults to 25
+     * @return A JSON list of the summaries of the users you seek
+     * @see UserService#findSummariesByEmailContaining(String, int, int) UserService.findSummariesByEmailContaining(String, int, int)
+     */
+    @GetMapping(value = "/user/email/like/{email}",
+        params = "view=summary",
+        produces = "application/json")
+    public ResponseEntity<?> getUserSummaryLikeEmail(
+        @PathVariable
+            String email,
+        @RequestParam(defaultValue = "0")
+            int page,
+        @RequestParam(defaultValue = "25")
+            int size)
+    {
+        List<UserSummary> u = userService.findSummariesByEmailContaining(email,
+            page,
+            size);
         return new ResponseEntity<>(u,
             HttpStatus.OK);
     }
@@ -137,6 +435,116 @@ public class UserController
             HttpStatus.CREATED);
     }
 
+    /**
+     * Adds users in bulk from newline delimited JSON (application/x-ndjson) or CSV (text/csv).
+     * The body is read and saved a chunk of rows at a time, so imports of any size can be sent in one request.
+     * Rows that cannot be imported are reported by line number and do not stop the rest of the import.
+     * <br> Example: <a href="http://localhost:2019/users/bulk">http://localhost:2019/users/bulk</a>
+     *
+     * @param request The request whose body holds one user per line
+     * @return The number of users created and the rows that could not be imported, with a status of OK
+     * @throws IOException if the body cannot be read
+     * @see UserImportService#importNdjson(java.io.BufferedReader) UserImportService.importNdjson(BufferedReader)
+     * @see UserImportService#importCsv(java.io.BufferedReader) UserImportService.importCsv(BufferedReader)
+     */
+    @PostMapping(value = "/bulk",
+        consumes = {"application/x-ndjson", "text/csv"},
+        produces = "application/json")
+    public ResponseEntity<?> importUsers(HttpServletRequest request) throws
+                                                                    IOException
+    {
+        if (request.getCharacterEncoding() == null)
+        {
+            request.setCharacterEncoding("UTF-8");
+        }
+
+        UserImportResult result;
+        if (MediaType.parseMediaType(request.getContentType())
+            .isCompatibleWith(TEXT_CSV))
+        {
+            result = userImportService.importCsv(request.getReader());
+        } else
+        {
+            result = userImportService.importNdjson(request.getReader());
+        }
+        return new ResponseEntity<>(result,
+            HttpStatus.OK);
+    }
+
+    /**
+     * Exports all users as newline delimited JSON (application/x-ndjson) or, when the client accepts text/csv, as CSV.
+     * Users are streamed from the database as they are read, so exports of any size are sent in one response.
+     * The response is compressed with gzip when the client accepts it.
+     * <br> Example: <a href="http://localhost:2019/users/export">http://localhost:2019/users/export</a>
+     * <br> Example: <a href="http://localhost:2019/users/export?columns=username,roles">http://localhost:2019/users/export?columns=username,roles</a>
+     *
+     * @param columns  The columns to export, in order. Defaults to userid, username, primaryemail, useremails and roles.
+     * @param request  The request whose Accept and Accept-Encoding headers, quality values included,
+     *                 choose the format and compression
+     * @param response The response to which the users are written with a status of OK
+     * @throws IOException if the response cannot be written
+     * @see UserExportService#exportNdjson(Set, java.io.OutputStream) UserExportService.exportNdjson(Set, OutputStream)
+     * @see UserExportService#exportCsv(Set, java.io.OutputStream) UserExportService.exportCsv(Set, OutputStream)
+     */
+    @GetMapping(value = "/export",
+        produces = {"application/x-ndjson", "text/csv"})
+    public void exportUsers(
+        @RequestParam(required = false)
+            List<String> columns,
+        HttpServletRequest request,
+        HttpServletResponse response) throws
+                                      IOException
+    {
+        Set<UserExportColumn> exportColumns = new LinkedHashSet<>();
+        if (columns == null || columns.isEmpty())
+        {
+            exportColumns.addAll(EnumSet.allOf(UserExportColumn.class));
+        } else
+        {
+            for (String column : columns)
+            {
+                try
+                {
+                    exportColumns.add(UserExportColumn.valueOf(column.trim()
+                        .toUpperCase()));
+                } catch (IllegalArgumentException e)
+                {
+                    throw BadRequestException.withoutStackTrace("Column %s cannot be exported",
+                        column);
+                }
+            }
+        }
+
+        boolean csv = prefersCsv(request.getHeader(HttpHeaders.ACCEPT));
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(csv ? "text/csv" : "application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.VARY,
+            HttpHeaders.ACCEPT_ENCODING);
+
+        boolean gzip = helperFunctions.acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (gzip)
+        {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING,
+                "gzip");
+        }
+
+        try (OutputStream out = gzip ? new GZIPOutputStream(response.getOutputStream(),
+            8192) : response.getOutputStream())
+        {
+            if (csv)
+            {
+                userExportService.exportCsv(exportColumns,
+                    out);
+            } else
+            {
+                userExportService.exportNdjson(exportColumns,
+                    out);
+            }
+        }
+    }
+
     /**
      * Given a complete User Object
      * Given the user id, primary key, is in the User table,
@@ -147,8 +555,10 @@ public class UserController
      * @param updateUser A complete User including all emails and roles to be used to
      *                   replace the User. Roles must already exist.
      * @param userid     The primary key of the user you wish to replace.
-     * @return status of OK
-     * @see UserService#save(User) UserService.save(User)
+     * @param ifMatch    Optional. The ETag from GET /users/user/{userid}. If the user has changed since, nothing is replaced
+     *                   and the status is Precondition Failed.
+     * @return status of OK, or Conflict if another request changed the user at the same time
+     * @see UserService#save(User, String) UserService.save(User, String)
      */
     @PutMapping(value = "/user/{userid}",
         consumes = "application/json")
@@ -157,10 +567,14 @@ public class UserController
         @RequestBody
             User updateUser,
         @PathVariable
-            long userid)
+            long userid,
+        @RequestHeader(value = HttpHeaders.IF_MATCH,
+            required = false)
+            String ifMatch)
     {
         updateUser.setUserid(userid);
-        userService.save(updateUser);
+        userService.save(updateUser,
+            ifMatch);
 
         return new ResponseEntity<>(HttpStatus.OK);
     }
@@ -173,8 +587,10 @@ public class UserController
      *
      * @param updateUser An object containing values for just the fields that are being updated. All other fields are left NULL.
      * @param id         The primary key of the user you wish to update.
-     * @return A status of OK
-     * @see UserService#update(User, long) UserService.update(User, long)
+     * @param ifMatch    Optional. The ETag from GET /users/user/{id}. If the user has changed since, nothing is updated
+     *                   and the status is Precondition Failed.
+     * @return A status of OK, or Conflict if another request changed the user at the same time
+     * @see UserService#update(User, long, String) UserService.update(User, long, String)
      */
     @PatchMapping(value = "/user/{id}",
         consumes = "application/json")
@@ -182,10 +598,14 @@ public class UserController
         @RequestBody
             User updateUser,
         @PathVariable
-            long id)
+            long id,
+        @RequestHeader(value = HttpHeaders.IF_MATCH,
+            required = false)
+            String ifMatch)
     {
         userService.update(updateUser,
-            id);
+            id,
+            ifMatch);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
@@ -223,4 +643,59 @@ public class UserController
         return new ResponseEntity<>(u,
             HttpStatus.OK);
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the summary, primary key, username and primary email, of the currently authenticated user
+     * <br>Example: <a href="http://localhost:2019/users/getuserinfo?view=summary">http://localhost:2019/users/getuserinfo?view=summary</a>
+     *
+     * @param authentication The authenticated user object provided by Spring Security
+     * @return JSON of the summary of the current user. Status of OK
+     * @see UserService#findSummaryByName(String) UserService.findSummaryByName(authenticated user)
+     */
+    @ApiOperation(value = "returns the summary of the currently authenticated user",
+        response = UserSummary.class)
+    @GetMapping(value = "/getuserinfo",
+        params = "view=summary",
+        produces = {"application/json"})
+    public ResponseEntity<?> getCurrentUserSummary(Authentication authentication)
+    {
+        UserSummary u = userService.findSummaryByName(authentication.getName());
+        return new ResponseEntity<>(u,
+            HttpStatus.OK);
+    }
+
+    /**
+     * Whether the client prefers CSV to newline delimited JSON. The media types of the Accept header are taken
+     * in order of quality, then specificity. The first of text/csv, application/x-ndjson or a wildcard covering
+     * newline delimited JSON decides. Media types with a quality of 0 are not acceptable and are skipped.
+     *
+     * @param accept The Accept header (String), may be null
+     * @return true if the export should be CSV
+     */
+    private static boolean prefersCsv(String accept)
+    {
+        if (accept == null)
+        {
+            return false;
+        }
+
+        List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        for (MediaType mediaType : mediaTypes)
+        {
+            if (mediaType.getQualityValue() == 0)
+            {
+                continue;
+            }
+            if (TEXT_CSV.equalsTypeAndSubtype(mediaType))
+            {
+                return true;
+            }
+            if (mediaType.includes(APPLICATION_NDJSON))
+            {
+                return false;
+            }
+        }
+        return false;
+    }
+}
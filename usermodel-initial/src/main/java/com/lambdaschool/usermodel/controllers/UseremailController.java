@@ -1,12 +1,15 @@
 package com.lambdaschool.usermodel.controllers;
 
 import com.lambdaschool.usermodel.models.Useremail;
+import com.lambdaschool.usermodel.models.UseremailSummary;
+import com.lambdaschool.usermodel.services.HelperFunctions;
 import com.lambdaschool.usermodel.services.UseremailService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.net.URI;
@@ -26,6 +29,12 @@ public class UseremailController
     @Autowired
     UseremailService useremailService;
 
+    /**
+     * Used to answer conditional GETs from the version of a resource
+     */
+    @Autowired
+    private HelperFunctions helperFunctions;
+
     /**
      * List of all users emails
      * <br>Example: <a href="http://localhost:2019/useremails/useremails">http://localhost:2019/useremails/useremails</a>
@@ -42,23 +51,70 @@ public class UseremailController
     }
 
     /**
-     * Return the user email combination referenced by the given primary key
+     * List of all users emails, each with the primary key of its user rather than the whole user
+     * <br>Example: <a href="http://localhost:2019/useremails/useremails?view=summary">http://localhost:2019/useremails/useremails?view=summary</a>
+     *
+     * @return JSON list of the summaries of all users emails
+     */
+    @GetMapping(value = "/useremails",
+        params = "view=summary",
+        produces = "application/json")
+    public ResponseEntity<?> listAllUseremailSummaries()
+    {
+        List<UseremailSummary> allUserEmails = useremailService.findAllSummaries();
+        return new ResponseEntity<>(allUserEmails,
+            HttpStatus.OK);
+    }
+
+    /**
+     * Return the user email combination referenced by the given primary key. The response carries an ETag.
+     * If the client sends it back and neither the combination nor its user
+     * have changed since, the response is 304 Not Modified with no body, and the combination is never read.
      * <br>Example: <a href="http://localhost:2019/useremails/useremail/8">http://localhost:2019/useremails/useremail/8</a>
      *
      * @param useremailId the primary key of the user email combination you seek
-     * @return JSON object of the user email combination you seek with a status of OK
+     * @param webRequest  The request, checked for If-None-Match
+     * @return JSON object of the user email combination you seek with a status of OK,
+     * or nothing if the client's copy is current
      */
     @GetMapping(value = "/useremail/{useremailId}",
         produces = "application/json")
     public ResponseEntity<?> getUserEmailById(
         @PathVariable
-            Long useremailId)
+            Long useremailId,
+        ServletWebRequest webRequest)
     {
+        if (helperFunctions.isNotModified(useremailService.findVersionById(useremailId),
+            webRequest))
+        {
+            return null;
+        }
+
         Useremail ue = useremailService.findUseremailById(useremailId);
         return new ResponseEntity<>(ue,
             HttpStatus.OK);
     }
 
+    /**
+     * Return the user email combination referenced by the given primary key, with the primary key of its user
+     * rather than the whole user
+     * <br>Example: <a href="http://localhost:2019/useremails/useremail/8?view=summary">http://localhost:2019/useremails/useremail/8?view=summary</a>
+     *
+     * @param useremailId the primary key of the user email combination you seek
+     * @return JSON object of the summary of the user email combination you seek with a status of OK
+     */
+    @GetMapping(value = "/useremail/{useremailId}",
+        params = "view=summary",
+        produces = "application/json")
+    public ResponseEntity<?> getUserEmailSummaryById(
+        @PathVariable
+            Long useremailId)
+    {
+        UseremailSummary ue = useremailService.findSummaryById(useremailId);
+        return new ResponseEntity<>(ue,
+            HttpStatus.OK);
+    }
+
     /**
      * Removes the given user email combination
      * <br>Example: <a href="http://localhost:2019/useremails/useremail/8">http://localhost:2019/useremails/useremail/8</a>
@@ -81,17 +137,24 @@ public class UseremailController
      *
      * @param useremailid  The primary key of the user email combination you wish to change
      * @param emailaddress The new email (String)
-     * @return Status of OK
+     * @param ifMatch      Optional. The ETag from GET /useremails/useremail/{useremailid}. If the combination has
+     *                     changed since, the email is not changed and the status is Precondition Failed.
+     * @return Status of OK, or Conflict if another request changed the combination at the same time
+     * @see UseremailService#update(long, String, String) UseremailService.update(long, String, String)
      */
     @PutMapping("/useremail/{useremailid}/email/{emailaddress}")
     public ResponseEntity<?> updateUserEmail(
         @PathVariable
             long useremailid,
         @PathVariable
-            String emailaddress)
+            String emailaddress,
+        @RequestHeader(value = HttpHeaders.IF_MATCH,
+            required = false)
+            String ifMatch)
     {
         useremailService.update(useremailid,
-            emailaddress);
+            emailaddress,
+            ifMatch);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
@@ -0,0 +1,116 @@
+package com.lambdaschool.usermodel.exceptions;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+/**
+ * The base of the custom exceptions of this application. Their messages all start with the same prefix.
+ * <p>
+ * Exceptions thrown again and again on ordinary paths, such as looking up something that does not exist,
+ * can be created without a stack trace, which is most of the cost of creating an exception,
+ * and with a message that is only formatted when it is first read.
+ */
+public abstract class ApplicationException
+    extends RuntimeException
+{
+    /**
+     * The start of every message
+     */
+    private static final String PREFIX = "Error from a Lambda School Application ";
+
+    /**
+     * The format of a message not yet formatted, otherwise null
+     */
+    private final String format;
+
+    /**
+     * The arguments of the format
+     */
+    private final transient Object[] args;
+
+    /**
+     * The message once formatted
+     */
+    private String formattedMessage;
+
+    /**
+     * Creates the exception with a stack trace
+     *
+     * @param message The message, after the prefix
+     */
+    protected ApplicationException(String message)
+    {
+        super(PREFIX + message);
+        format = null;
+        args = null;
+    }
+
+    /**
+     * Creates the exception, optionally without a stack trace. An exception without a stack trace costs little
+     * to create, and may be created once and thrown again and again, as it holds nothing about where it was thrown.
+     *
+     * @param message            The message, after the prefix
+     * @param writableStackTrace false to leave out the stack trace, and suppressed exceptions
+     */
+    protected ApplicationException(
+        String message,
+        boolean writableStackTrace)
+    {
+        super(PREFIX + message,
+            null,
+            writableStackTrace,
+            writableStackTrace);
+        format = null;
+        args = null;
+    }
+
+    /**
+     * Creates the exception without a stack trace, with a message formatted only when it is read
+     *
+     * @param format The format of the message, after the prefix, as for String.format
+     * @param args   The arguments of the format
+     */
+    protected ApplicationException(
+        String format,
+        Object[] args)
+    {
+        super(null,
+            null,
+            false,
+            false);
+        this.format = format;
+        this.args = args;
+    }
+
+    @Override
+    public String getMessage()
+    {
+        if (format == null)
+        {
+            return super.getMessage();
+        }
+
+        // formatting twice from two threads is harmless, both get the same message
+        String message = formattedMessage;
+        if (message == null)
+        {
+            message = PREFIX + String.format(format,
+                args);
+            formattedMessage = message;
+        }
+        return message;
+    }
+
+    /**
+     * Formats the message before the exception is serialized, as its arguments are not serialized
+     *
+     * @param out Where the exception is written
+     * @throws IOException if the exception cannot be written
+     */
+    private void writeObject(ObjectOutputStream out) throws
+                                                      IOException
+    {
+        getMessage();
+        out.defaultWriteObject();
+    }
+}
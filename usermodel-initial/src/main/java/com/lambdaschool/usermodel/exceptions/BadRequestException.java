@@ -0,0 +1,37 @@
+package com.lambdaschool.usermodel.exceptions;
+
+/**
+ * A custom exception to be used when the parameters of a request make no sense, such as a page that cannot exist
+ */
+public class BadRequestException
+    extends ApplicationException
+{
+    public BadRequestException(String message)
+    {
+        super(message);
+    }
+
+    private BadRequestException(
+        String format,
+        Object[] args)
+    {
+        super(format,
+            args);
+    }
+
+    /**
+     * Creates the exception without a stack trace, with a message formatted only when it is read.
+     * Use this for errors that clients can cause as often as they like.
+     *
+     * @param format What is wrong with the request, as a format for String.format
+     * @param args   The arguments of the format
+     * @return the exception, to be thrown
+     */
+    public static BadRequestException withoutStackTrace(
+        String format,
+        Object... args)
+    {
+        return new BadRequestException(format,
+            args);
+    }
+}
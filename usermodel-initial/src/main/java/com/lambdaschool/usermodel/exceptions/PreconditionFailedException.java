@@ -0,0 +1,14 @@
+package com.lambdaschool.usermodel.exceptions;
+
+/**
+ * A custom exception to be used when a request's precondition, such as If-Match, does not hold.
+ * Typically the resource has changed since the client last read it.
+ */
+public class PreconditionFailedException
+    extends ApplicationException
+{
+    public PreconditionFailedException(String message)
+    {
+        super(message);
+    }
+}
@@ -4,10 +4,34 @@ package com.lambdaschool.usermodel.exceptions;
  * A custom exception to be used when a resource is found but is not suppose to be
  */
 public class ResourceFoundException
-    extends RuntimeException
+    extends ApplicationException
 {
     public ResourceFoundException(String message)
     {
-        super("Error from a Lambda School Application " + message);
+        super(message);
     }
-}
\ No newline at end of file
+
+    private ResourceFoundException(
+        String format,
+        Object[] args)
+    {
+        super(format,
+            args);
+    }
+
+    /**
+     * Creates the exception without a stack trace, with a message formatted only when it is read.
+     * Use this for errors that clients can cause as often as they like.
+     *
+     * @param format What was found, as a format for String.format
+     * @param args   The arguments of the format
+     * @return the exception, to be thrown
+     */
+    public static ResourceFoundException withoutStackTrace(
+        String format,
+        Object... args)
+    {
+        return new ResourceFoundException(format,
+            args);
+    }
+}
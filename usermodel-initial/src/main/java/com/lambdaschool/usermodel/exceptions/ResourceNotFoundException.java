@@ -4,10 +4,49 @@ package com.lambdaschool.usermodel.exceptions;
  * A custom exception to be used when a resource is not but is suppose to be
  */
 public class ResourceNotFoundException
-    extends RuntimeException
+    extends ApplicationException
 {
     public ResourceNotFoundException(String message)
     {
-        super("Error from a Lambda School Application " + message);
+        super(message);
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates the exception, optionally without a stack trace. An exception without a stack trace costs little
+     * to create, and may be created once and thrown again and again, as it holds nothing about where it was thrown.
+     *
+     * @param message            What was not found
+     * @param writableStackTrace false to leave out the stack trace, and suppressed exceptions
+     */
+    public ResourceNotFoundException(
+        String message,
+        boolean writableStackTrace)
+    {
+        super(message,
+            writableStackTrace);
+    }
+
+    private ResourceNotFoundException(
+        String format,
+        Object[] args)
+    {
+        super(format,
+            args);
+    }
+
+    /**
+     * Creates the exception without a stack trace, with a message formatted only when it is read.
+     * Use this where lookups of things that do not exist are common, for example by id from a request.
+     *
+     * @param format What was not found, as a format for String.format
+     * @param args   The arguments of the format
+     * @return the exception, to be thrown
+     */
+    public static ResourceNotFoundException withoutStackTrace(
+        String format,
+        Object... args)
+    {
+        return new ResourceNotFoundException(format,
+            args);
+    }
+}
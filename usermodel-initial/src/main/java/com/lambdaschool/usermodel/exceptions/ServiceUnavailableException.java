@@ -0,0 +1,14 @@
+package com.lambdaschool.usermodel.exceptions;
+
+/**
+ * A custom exception to be used when the application is too busy to handle a request right now.
+ * The client should try again shortly.
+ */
+public class ServiceUnavailableException
+    extends ApplicationException
+{
+    public ServiceUnavailableException(String message)
+    {
+        super(message);
+    }
+}
@@ -1,7 +1,10 @@
 package com.lambdaschool.usermodel.handlers;
 
+import com.lambdaschool.usermodel.exceptions.BadRequestException;
+import com.lambdaschool.usermodel.exceptions.PreconditionFailedException;
 import com.lambdaschool.usermodel.exceptions.ResourceFoundException;
 import com.lambdaschool.usermodel.exceptions.ResourceNotFoundException;
+import com.lambdaschool.usermodel.exceptions.ServiceUnavailableException;
 import com.lambdaschool.usermodel.models.ErrorDetail;
 import com.lambdaschool.usermodel.services.HelperFunctions;
 import org.springframework.beans.ConversionNotSupportedException;
@@ -9,6 +12,7 @@ import org.springframework.beans.TypeMismatchException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -104,6 +108,106 @@ public class RestExceptionHandler
             HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Our custom handling of ServiceUnavailableExceptions. This gets thrown manually by our application when it is too busy,
+     * for example when too many passwords are waiting to be hashed.
+     *
+     * @param sue All the information about the exception that is thrown.
+     * @return The error details for displaying to the client plus the status Service Unavailable and a Retry-After header.
+     */
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<?> handleServiceUnavailableException(ServiceUnavailableException sue)
+    {
+        ErrorDetail errorDetail = new ErrorDetail();
+        errorDetail.setTimestamp(new Date());
+        errorDetail.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        errorDetail.setTitle("Service Unavailable");
+        errorDetail.setDetail(sue.getMessage());
+        errorDetail.setDeveloperMessage(sue.getClass()
+            .getName());
+        errorDetail.setErrors(helperFunctions.getConstraintViolation(sue));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER,
+            "1");
+
+        return new ResponseEntity<>(errorDetail,
+            headers,
+            HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * Our custom handling of BadRequestExceptions. This gets thrown manually by our application when the parameters
+     * of a request make no sense, for example a page of search results that cannot exist.
+     *
+     * @param bre All the information about the exception that is thrown.
+     * @return The error details for displaying to the client plus the status Bad Request.
+     */
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<?> handleBadRequestException(BadRequestException bre)
+    {
+        ErrorDetail errorDetail = new ErrorDetail();
+        errorDetail.setTimestamp(new Date());
+        errorDetail.setStatus(HttpStatus.BAD_REQUEST.value());
+        errorDetail.setTitle("Bad Request");
+        errorDetail.setDetail(bre.getMessage());
+        errorDetail.setDeveloperMessage(bre.getClass()
+            .getName());
+        errorDetail.setErrors(helperFunctions.getConstraintViolation(bre));
+
+        return new ResponseEntity<>(errorDetail,
+            null,
+            HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Our custom handling of PreconditionFailedExceptions. This gets thrown manually by our application when
+     * the ETag in a request's If-Match header is no longer the ETag of the resource.
+     *
+     * @param pfe All the information about the exception that is thrown.
+     * @return The error details for displaying to the client plus the status Precondition Failed.
+     */
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<?> handlePreconditionFailedException(PreconditionFailedException pfe)
+    {
+        ErrorDetail errorDetail = new ErrorDetail();
+        errorDetail.setTimestamp(new Date());
+        errorDetail.setStatus(HttpStatus.PRECONDITION_FAILED.value());
+        errorDetail.setTitle("Precondition Failed");
+        errorDetail.setDetail(pfe.getMessage());
+        errorDetail.setDeveloperMessage(pfe.getClass()
+            .getName());
+        errorDetail.setErrors(helperFunctions.getConstraintViolation(pfe));
+
+        return new ResponseEntity<>(errorDetail,
+            null,
+            HttpStatus.PRECONDITION_FAILED);
+    }
+
+    /**
+     * Handling of optimistic locking failures. Thrown by JPA when a row being updated was changed
+     * by another transaction after this one read it.
+     *
+     * @param olfe All the information about the exception that is thrown.
+     * @return The error details for displaying to the client plus the status Conflict.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<?> handleOptimisticLockingFailureException(OptimisticLockingFailureException olfe)
+    {
+        ErrorDetail errorDetail = new ErrorDetail();
+        errorDetail.setTimestamp(new Date());
+        errorDetail.setStatus(HttpStatus.CONFLICT.value());
+        errorDetail.setTitle("Conflict");
+        errorDetail.setDetail("Error from a Lambda School Application The resource was changed by another request. Read it again and retry.");
+        errorDetail.setDeveloperMessage(olfe.getClass()
+            .getName());
+        errorDetail.setErrors(helperFunctions.getConstraintViolation(olfe));
+
+        return new ResponseEntity<>(errorDetail,
+            null,
+            HttpStatus.CONFLICT);
+    }
+
     /**
      * All other exceptions not handled elsewhere are handled by this method.
      *
@@ -395,6 +499,15 @@ public class RestExceptionHandler
         HttpStatus status,
         WebRequest request)
     {
+        // Passwords are hashed as the request body is read, so the application being too busy shows up here
+        if (ex.getMostSpecificCause() instanceof ServiceUnavailableException)
+        {
+            ResponseEntity<?> unavailable = handleServiceUnavailableException((ServiceUnavailableException) ex.getMostSpecificCause());
+            return new ResponseEntity<>(unavailable.getBody(),
+                unavailable.getHeaders(),
+                unavailable.getStatusCode());
+        }
+
         ErrorDetail errorDetail = new ErrorDetail();
         errorDetail.setTimestamp(new Date());
         errorDetail.setStatus(status.value());
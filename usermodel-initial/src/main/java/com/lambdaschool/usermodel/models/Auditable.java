@@ -9,6 +9,7 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import javax.persistence.EntityListeners;
 import javax.persistence.MappedSuperclass;
 import javax.persistence.Temporal;
+import javax.persistence.Version;
 import java.util.Date;
 
 import static javax.persistence.TemporalType.TIMESTAMP;
@@ -23,6 +24,8 @@ import static javax.persistence.TemporalType.TIMESTAMP;
  * Thus this annotiation is "listening" for when an entity is accessed and then performs its argument.
  * AuditingEntityListener.class - The class that captures the data for and updates the annotations used in auditing -
  * CreatedBy, CreatedDate, ModifiedBy, ModifiedDate
+ * <p>
+ * The version field turns on optimistic locking for the tables that extend this class.
  */
 @MappedSuperclass
 @EntityListeners(AuditingEntityListener.class)
@@ -57,4 +60,13 @@ abstract class Auditable
     @LastModifiedDate
     @Temporal(TIMESTAMP)
     protected Date lastmodifieddate;
+
+    /**
+     * The number of times this row has been updated, used for optimistic locking
+     * <p>
+     * Version - Hibernate adds one to this field on every update, but only if it still holds the value read.
+     * If another transaction updated the row in the meantime the update fails, instead of silently overwriting that change.
+     */
+    @Version
+    protected long version;
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.lambdaschool.usermodel.models;
+
+import java.util.Date;
+
+/**
+ * The version of a resource as returned by GET, read without loading the resource itself.
+ * <p>
+ * A resource is made of rows from several tables, for example a user with their emails and roles.
+ * The version is the latest lastmodifieddate of those rows, how many rows there are and the sum of their versions.
+ * Every change of a row raises its version, even two in the same millisecond, and removing a row changes the count.
+ */
+public interface ResourceVersion
+{
+    /**
+     * Getter for the date and time any row of the resource was last modified
+     *
+     * @return the latest lastmodifieddate (Date) of the rows making up the resource, null if there are no rows
+     */
+    Date getLastmodifieddate();
+
+    /**
+     * Getter for the number of rows making up the resource
+     *
+     * @return the number of rows (long) making up the resource, 0 if the resource does not exist
+     */
+    long getRowcount();
+
+    /**
+     * Getter for the sum of the versions of the rows making up the resource
+     *
+     * @return the sum of the version columns (long) of the rows making up the resource, 0 if there are no rows
+     */
+    long getVersions();
+}
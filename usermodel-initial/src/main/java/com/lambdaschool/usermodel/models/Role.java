@@ -3,22 +3,29 @@ package com.lambdaschool.usermodel.models;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import javax.persistence.*;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The entity allowing interaction with the roles table.
+ * <p>
+ * Roles are often handed out as lazily loaded references, so the fields Hibernate adds to those are not sent as JSON.
  */
 @Entity
 @Table(name = "roles")
+@JsonIgnoreProperties(value = {"hibernateLazyInitializer", "handler"})
 public class Role
     extends Auditable
 {
     /**
-     * The primary key (long) of the roles table.
+     * The primary key (long) of the roles table. Taken from the roles_seq sequence 50 keys at a time.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+        generator = "roles_seq")
+    @SequenceGenerator(name = "roles_seq",
+        sequenceName = "roles_seq",
+        allocationSize = 50)
     private long roleid;
 
     /**
@@ -32,13 +39,16 @@ public class Role
     /**
      * Part of the join relationship between user and role
      * connects roles to the user role combination
+     * <p>
+     * A role such as USER is assigned to every user, so this is kept as a list. Loading it is linear in the number
+     * of users, where a set would hash every user role combination of the role to the same bucket.
      */
     @OneToMany(mappedBy = "role",
         cascade = CascadeType.ALL,
         orphanRemoval = true)
     @JsonIgnoreProperties(value = "role",
         allowSetters = true)
-    private Set<UserRoles> users = new HashSet<>();
+    private List<UserRoles> users = new ArrayList<>();
 
     /**
      * Default Constructor used primarily by the JPA.
@@ -102,7 +112,7 @@ public class Role
      *
      * @return A list of user role combinations associated with this role
      */
-    public Set<UserRoles> getUsers()
+    public List<UserRoles> getUsers()
     {
         return users;
     }
@@ -112,7 +122,7 @@ public class Role
      *
      * @param users Change the list of user role combinations associated with this role to this one
      */
-    public void setUsers(Set<UserRoles> users)
+    public void setUsers(List<UserRoles> users)
     {
         this.users = users;
     }
@@ -0,0 +1,25 @@
+package com.lambdaschool.usermodel.models;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * A projection of Role holding only its primary key and name, without its users or audit fields.
+ * Repositories returning it select just these columns and never load a Role entity.
+ */
+@JsonPropertyOrder({"roleid", "name"})
+public interface RoleSummary
+{
+    /**
+     * Getter for role id
+     *
+     * @return the role id, primary key, (long) of this role
+     */
+    long getRoleid();
+
+    /**
+     * Getter for role name
+     *
+     * @return role name (String) in uppercase
+     */
+    String getName();
+}
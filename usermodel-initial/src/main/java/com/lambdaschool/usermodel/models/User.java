@@ -1,10 +1,7 @@
 package com.lambdaschool.usermodel.models;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 import javax.persistence.*;
 import javax.validation.constraints.Email;
@@ -23,9 +20,14 @@ public class User
 {
     /**
      * The primary key (long) of the users table.
+     * Keys are taken from the users_seq sequence 50 at a time, so adding users in bulk rarely reads the sequence.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+        generator = "users_seq")
+    @SequenceGenerator(name = "users_seq",
+        sequenceName = "users_seq",
+        allocationSize = 50)
     private long userid;
 
     /**
@@ -178,12 +180,12 @@ public class User
     }
 
     /**
-     * @param password the new password (String) for this user. Comes in plain text and goes out encrypted
+     * @param password the new password (String) for this user. Comes in plain text and is encrypted by the user service
+     *                 when the user is saved
      */
     public void setPassword(String password)
     {
-        BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
-        this.password = passwordEncoder.encode(password);
+        this.password = password;
     }
 
     /**
@@ -225,26 +227,4 @@ public class User
     {
         this.roles = roles;
     }
-
-    /**
-     * Internally, user security requires a list of authorities, roles, that the user has. This method is a simple way to provide those.
-     * Note that SimpleGrantedAuthority requests the format ROLE_role name all in capital letters!
-     *
-     * @return The list of authorities, roles, this user object has
-     */
-    @JsonIgnore
-    public List<SimpleGrantedAuthority> getAuthority()
-    {
-        List<SimpleGrantedAuthority> rtnList = new ArrayList<>();
-
-        for (UserRoles r : this.roles)
-        {
-            String myRole = "ROLE_" + r.getRole()
-                .getName()
-                .toUpperCase();
-            rtnList.add(new SimpleGrantedAuthority(myRole));
-        }
-
-        return rtnList;
-    }
 }
@@ -0,0 +1,42 @@
+package com.lambdaschool.usermodel.models;
+
+/**
+ * The columns that can be chosen when exporting users. Passwords are never exported.
+ */
+public enum UserExportColumn
+{
+    /**
+     * The primary key of the user
+     */
+    USERID,
+
+    /**
+     * The username of the user
+     */
+    USERNAME,
+
+    /**
+     * The primary email of the user
+     */
+    PRIMARYEMAIL,
+
+    /**
+     * The other email addresses of the user
+     */
+    USEREMAILS,
+
+    /**
+     * The names of the roles of the user
+     */
+    ROLES;
+
+    /**
+     * The name of the column as it appears in the export, the same as the field of the User model
+     *
+     * @return the lowercase name (String) of the column
+     */
+    public String getFieldName()
+    {
+        return name().toLowerCase();
+    }
+}
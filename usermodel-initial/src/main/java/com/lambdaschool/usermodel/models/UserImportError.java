@@ -0,0 +1,78 @@
+package com.lambdaschool.usermodel.models;
+
+/**
+ * A model to report a row of a bulk import that could not be imported
+ */
+public class UserImportError
+{
+    /**
+     * The line number (long) of the row, counting from 1
+     */
+    private long line;
+
+    /**
+     * Why the row could not be imported (String)
+     */
+    private String message;
+
+    /**
+     * Default constructor used primarily by Jackson
+     */
+    public UserImportError()
+    {
+    }
+
+    /**
+     * Given the line and the reason, create a new row error
+     *
+     * @param line    the line number (long) of the row
+     * @param message why the row could not be imported (String)
+     */
+    public UserImportError(
+        long line,
+        String message)
+    {
+        this.line = line;
+        this.message = message;
+    }
+
+    /**
+     * Getter for the line number
+     *
+     * @return the line number (long) of the row
+     */
+    public long getLine()
+    {
+        return line;
+    }
+
+    /**
+     * Setter for the line number
+     *
+     * @param line the new line number (long) of the row
+     */
+    public void setLine(long line)
+    {
+        this.line = line;
+    }
+
+    /**
+     * Getter for the message
+     *
+     * @return why the row could not be imported (String)
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * Setter for the message
+     *
+     * @param message the new reason (String) the row could not be imported
+     */
+    public void setMessage(String message)
+    {
+        this.message = message;
+    }
+}
@@ -0,0 +1,85 @@
+package com.lambdaschool.usermodel.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A model to report the outcome of a bulk import of users
+ */
+public class UserImportResult
+{
+    /**
+     * The number (long) of users created
+     */
+    private long imported;
+
+    /**
+     * The number (long) of rows that could not be imported
+     */
+    private long failed;
+
+    /**
+     * Why rows could not be imported. Only the first errors are kept when there are very many.
+     */
+    private List<UserImportError> errors = new ArrayList<>();
+
+    /**
+     * Getter for the number of users created
+     *
+     * @return the number (long) of users created
+     */
+    public long getImported()
+    {
+        return imported;
+    }
+
+    /**
+     * Setter for the number of users created
+     *
+     * @param imported the new number (long) of users created
+     */
+    public void setImported(long imported)
+    {
+        this.imported = imported;
+    }
+
+    /**
+     * Getter for the number of rows that could not be imported
+     *
+     * @return the number (long) of rows that could not be imported
+     */
+    public long getFailed()
+    {
+        return failed;
+    }
+
+    /**
+     * Setter for the number of rows that could not be imported
+     *
+     * @param failed the new number (long) of rows that could not be imported
+     */
+    public void setFailed(long failed)
+    {
+        this.failed = failed;
+    }
+
+    /**
+     * Getter for the row errors
+     *
+     * @return the list of row errors
+     */
+    public List<UserImportError> getErrors()
+    {
+        return errors;
+    }
+
+    /**
+     * Setter for the row errors
+     *
+     * @param errors the new list of row errors
+     */
+    public void setErrors(List<UserImportError> errors)
+    {
+        this.errors = errors;
+    }
+}
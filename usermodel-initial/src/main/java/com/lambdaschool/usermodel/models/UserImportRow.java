@@ -0,0 +1,142 @@
+package com.lambdaschool.usermodel.models;
+
+import javax.validation.constraints.Email;
+import javax.validation.constraints.NotBlank;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A model for one user read by the bulk import, one line of NDJSON or CSV.
+ * Note the roles default to USER when none are given.
+ */
+public class UserImportRow
+{
+    /**
+     * The username (String)
+     */
+    @NotBlank
+    private String username;
+
+    /**
+     * The user's password (String), in clear text until the user is created
+     */
+    @NotBlank
+    private String password;
+
+    /**
+     * The user's primary email address (String)
+     */
+    @NotBlank
+    @Email
+    private String primaryemail;
+
+    /**
+     * The user's other email addresses
+     */
+    private List<@Email String> useremails = new ArrayList<>();
+
+    /**
+     * The names of the user's roles. The roles must already exist.
+     */
+    private List<String> roles = new ArrayList<>();
+
+    /**
+     * Getter for the username
+     *
+     * @return the username (String) associated with this user
+     */
+    public String getUsername()
+    {
+        return username;
+    }
+
+    /**
+     * Setter for the username
+     *
+     * @param username the new username (String) associated with this user
+     */
+    public void setUsername(String username)
+    {
+        this.username = username;
+    }
+
+    /**
+     * Getter for the password of this user
+     *
+     * @return the password (String) for this user
+     */
+    public String getPassword()
+    {
+        return password;
+    }
+
+    /**
+     * Setter for the password of this user
+     *
+     * @param password the new password (String in clear text) for this user
+     */
+    public void setPassword(String password)
+    {
+        this.password = password;
+    }
+
+    /**
+     * Getter for the primary email of this user
+     *
+     * @return the primary email (String) for this user
+     */
+    public String getPrimaryemail()
+    {
+        return primaryemail;
+    }
+
+    /**
+     * Setter for the primary email of this user
+     *
+     * @param primaryemail the new primary email (String) for this user
+     */
+    public void setPrimaryemail(String primaryemail)
+    {
+        this.primaryemail = primaryemail;
+    }
+
+    /**
+     * Getter for the other email addresses of this user
+     *
+     * @return the other email addresses of this user
+     */
+    public List<String> getUseremails()
+    {
+        return useremails;
+    }
+
+    /**
+     * Setter for the other email addresses of this user
+     *
+     * @param useremails the new list of other email addresses for this user. Null means none.
+     */
+    public void setUseremails(List<String> useremails)
+    {
+        this.useremails = (useremails == null) ? new ArrayList<>() : useremails;
+    }
+
+    /**
+     * Getter for the role names of this user
+     *
+     * @return the names of the roles of this user
+     */
+    public List<String> getRoles()
+    {
+        return roles;
+    }
+
+    /**
+     * Setter for the role names of this user
+     *
+     * @param roles the new list of role names for this user. Null means none.
+     */
+    public void setRoles(List<String> roles)
+    {
+        this.roles = (roles == null) ? new ArrayList<>() : roles;
+    }
+}
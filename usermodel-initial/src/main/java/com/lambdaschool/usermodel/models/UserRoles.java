@@ -121,10 +121,16 @@ public class UserRoles
             ((role == null) ? 0 : role.getRoleid()) == ((that.role == null) ? 0 : that.role.getRoleid());
     }
 
+    /**
+     * Hashes on the role only. Roles are saved before they are assigned, while a new user only gets its primary key
+     * when it is saved, so including the user would change the hash code while the combination sits in the user's set.
+     * The users of a role are kept in a list for this reason.
+     *
+     * @return the hash code of the role's primary key
+     */
     @Override
     public int hashCode()
     {
-        // return Objects.hash(user.getUserid(), role.getRoleid());
-        return 37;
+        return Long.hashCode((role == null) ? 0 : role.getRoleid());
     }
 }
@@ -0,0 +1,32 @@
+package com.lambdaschool.usermodel.models;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * A projection of User holding only its own columns, without its emails, roles or audit fields.
+ * Repositories returning it select just these columns and never load a User entity.
+ */
+@JsonPropertyOrder({"userid", "username", "primaryemail"})
+public interface UserSummary
+{
+    /**
+     * Getter for userid
+     *
+     * @return the userid (long) of the user
+     */
+    long getUserid();
+
+    /**
+     * Getter for username
+     *
+     * @return the username (String) lowercase
+     */
+    String getUsername();
+
+    /**
+     * Getter for primary email
+     *
+     * @return the primary email (String) for the user converted to lowercase
+     */
+    String getPrimaryemail();
+}
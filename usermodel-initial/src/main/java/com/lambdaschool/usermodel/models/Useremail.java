@@ -16,10 +16,14 @@ public class Useremail
     extends Auditable
 {
     /**
-     * The primary key (long) of the useremails table
+     * The primary key (long) of the useremails table. Taken from the useremails_seq sequence 50 keys at a time.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+        generator = "useremails_seq")
+    @SequenceGenerator(name = "useremails_seq",
+        sequenceName = "useremails_seq",
+        allocationSize = 50)
     private long useremailid;
 
     /**
@@ -0,0 +1,32 @@
+package com.lambdaschool.usermodel.models;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * A projection of Useremail holding the email address and the primary key of its user, instead of the whole user.
+ * Repositories returning it select just these columns and never load a Useremail or User entity.
+ */
+@JsonPropertyOrder({"useremailid", "useremail", "userid"})
+public interface UseremailSummary
+{
+    /**
+     * Getter for useremailid
+     *
+     * @return the primary key (long) of this useremail object
+     */
+    long getUseremailid();
+
+    /**
+     * Getter for useremail
+     *
+     * @return the email (String) associated with this useremail object in lowercase
+     */
+    String getUseremail();
+
+    /**
+     * Getter for the user associated with this useremail
+     *
+     * @return the primary key (long) of the user
+     */
+    long getUserid();
+}
@@ -1,11 +1,17 @@
 package com.lambdaschool.usermodel.repository;
 
+import com.lambdaschool.usermodel.models.ResourceVersion;
 import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.models.RoleSummary;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 /**
  * The CRUD Repository connecting Role to the rest of the application
  */
@@ -20,6 +26,14 @@ public interface RoleRepository
      */
     Role findByNameIgnoreCase(String name);
 
+    /**
+     * Counts the roles with the given primary keys. Only the primary keys are read.
+     *
+     * @param roleids the primary keys (long) of the roles
+     * @return the number of those roles that exist
+     */
+    long countByRoleidIn(Collection<Long> roleids);
+
     /**
      * Updates the name of the role based on the given role id.
      *
@@ -29,11 +43,63 @@ public interface RoleRepository
      */
     @Transactional
     @Modifying
-    @Query(value = "UPDATE roles SET name = :name, lastmodifiedby = :uname, lastmodifieddate = CURRENT_TIMESTAMP WHERE roleid = :roleid",
+    @Query(value = "UPDATE roles SET name = :name, lastmodifiedby = :uname, lastmodifieddate = CURRENT_TIMESTAMP, version = version + 1 WHERE roleid = :roleid",
         nativeQuery = true)
     void updateRoleName(
         String uname,
         long roleid,
         String name);
 
+    /**
+     * The summaries of all roles in primary key order. Only the primary key and name are selected.
+     *
+     * @return the summaries of all roles
+     */
+    List<RoleSummary> findSummariesByOrderByRoleidAsc();
+
+    /**
+     * The summary of the role with the given primary key. Only the primary key and name are selected.
+     *
+     * @param roleid the primary key (long) of the role you seek
+     * @return the summary of the role, if there is one
+     */
+    Optional<RoleSummary> findSummaryByRoleid(long roleid);
+
+    /**
+     * The summary of the role with the given name, case insensitive. Only the primary key and name are selected.
+     *
+     * @param name the name of the role which you seek
+     * @return the summary of the role, or null if there is no such role
+     */
+    RoleSummary findSummaryByNameIgnoreCase(String name);
+
+    /**
+     * The version of the list of roles as returned by GET /roles/roles. Roles are listed with their users
+     * and those users' useremails, so every row of those tables counts.
+     * Only the dates and versions are read, no entities are loaded.
+     *
+     * @return the version of the list of roles
+     */
+    @Query(value = "SELECT MAX(v.lastmodifieddate) AS lastmodifieddate, COUNT(*) AS rowcount, COALESCE(SUM(v.version), 0) AS versions FROM (" +
+        "SELECT r.lastmodifieddate, r.version FROM roles r " +
+        "UNION ALL SELECT ur.lastmodifieddate, ur.version FROM userroles ur " +
+        "UNION ALL SELECT u.lastmodifieddate, u.version FROM users u " +
+        "UNION ALL SELECT ue.lastmodifieddate, ue.version FROM useremails ue) v",
+        nativeQuery = true)
+    ResourceVersion findVersion();
+
+    /**
+     * The version of the role as returned by GET /roles/role/{id}: the role, its user role combinations,
+     * those users and their useremails. Only the dates and versions are read, no entities are loaded.
+     *
+     * @param roleid the primary key (long) of the role
+     * @return the version of the role. The row count is 0 if there is no such role.
+     */
+    @Query(value = "SELECT MAX(v.lastmodifieddate) AS lastmodifieddate, COUNT(*) AS rowcount, COALESCE(SUM(v.version), 0) AS versions FROM (" +
+        "SELECT r.lastmodifieddate, r.version FROM roles r WHERE r.roleid = :roleid " +
+        "UNION ALL SELECT ur.lastmodifieddate, ur.version FROM userroles ur WHERE ur.roleid = :roleid " +
+        "UNION ALL SELECT u.lastmodifieddate, u.version FROM userroles ur JOIN users u ON u.userid = ur.userid WHERE ur.roleid = :roleid " +
+        "UNION ALL SELECT ue.lastmodifieddate, ue.version FROM userroles ur JOIN useremails ue ON ue.userid = ur.userid WHERE ur.roleid = :roleid) v",
+        nativeQuery = true)
+    ResourceVersion findVersionByRoleid(long roleid);
 }
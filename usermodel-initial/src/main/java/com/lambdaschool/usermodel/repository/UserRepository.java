@@ -1,9 +1,16 @@
 package com.lambdaschool.usermodel.repository;
 
+import com.lambdaschool.usermodel.models.ResourceVersion;
 import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.models.UserSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * The CRUD repository connecting User to the rest of the application
@@ -12,18 +19,175 @@ public interface UserRepository
     extends CrudRepository<User, Long>
 {
     /**
-     * Find a user based off over username
+     * Find a user based off over username. The user's roles are fetched in the same query
+     * as they are needed to authenticate the user.
      *
      * @param username the name (String) of user you seek
      * @return the first user object with the name you seek
      */
+    @EntityGraph(attributePaths = {"roles", "roles.role"})
     User findByUsername(String username);
 
     /**
-     * Find all users whose name contains a given substring ignoring case
+     * A page of the users whose name contains a given substring ignoring case, in primary key order.
+     * Used only until the in memory search index is ready.
      *
-     * @param name the substring of the names (String) you seek
-     * @return List of users whose name contain the given substring ignoring case
+     * @param name     the substring of the names (String) you seek
+     * @param pageable the page of users to read
+     * @return the page of users whose name contain the given substring ignoring case
      */
-    List<User> findByUsernameContainingIgnoreCase(String name);
+    List<User> findByUsernameContainingIgnoreCaseOrderByUseridAsc(
+        String name,
+        Pageable pageable);
+
+    /**
+     * A page of the users with an email, primary or not, containing a given substring ignoring case, in primary key order.
+     * Used only until the in memory search index is ready.
+     *
+     * @param email    the substring of the emails (String) you seek
+     * @param pageable the page of users to read
+     * @return the page of users with an email containing the given substring ignoring case
+     */
+    @Query(value = "SELECT DISTINCT u FROM User u LEFT JOIN u.useremails ue " +
+        "WHERE LOWER(u.primaryemail) LIKE LOWER(CONCAT('%', :email, '%')) OR LOWER(ue.useremail) LIKE LOWER(CONCAT('%', :email, '%')) " +
+        "ORDER BY u.userid")
+    List<User> findByEmailContaining(
+        String email,
+        Pageable pageable);
+
+    /**
+     * Keyset (cursor) pagination over users. Returns the next page of users whose primary key is greater than the given cursor,
+     * ordered by primary key. Unlike offset pagination the database seeks straight to the cursor using the primary key index,
+     * so every page costs the same no matter how deep into the table we are.
+     *
+     * @param userid   the cursor, the primary key (long) of the last user already read. Use 0 to start from the beginning
+     * @param pageable the size of the page to read. Only the page size is used, the page number should always be 0
+     * @return the next page of users in primary key order. An empty list means there are no more users
+     */
+    List<User> findByUseridGreaterThanOrderByUseridAsc(
+        long userid,
+        Pageable pageable);
+
+    /**
+     * Fetch plan used when listing users. Loads the useremails of all the given users in a single query.
+     * The users already in the persistence context get their useremails collection filled in.
+     * <p>
+     * The useremails and roles are fetched by separate queries, as joining both collections at once would
+     * multiply the rows returned and duplicate the entries in the useremails list.
+     *
+     * @param userids the primary keys (long) of the users whose useremails are needed
+     * @return the users with their useremails loaded
+     */
+    @EntityGraph(attributePaths = {"useremails"})
+    @Query(value = "SELECT DISTINCT u FROM User u WHERE u.userid IN :userids")
+    List<User> findWithUseremailsByUseridIn(Collection<Long> userids);
+
+    /**
+     * Fetch plan used when listing users. Loads the roles, including the role itself,
+     * of all the given users in a single query.
+     * The users already in the persistence context get their roles collection filled in.
+     *
+     * @param userids the primary keys (long) of the users whose roles are needed
+     * @return the users with their roles loaded
+     */
+    @EntityGraph(attributePaths = {"roles", "roles.role"})
+    @Query(value = "SELECT DISTINCT u FROM User u WHERE u.userid IN :userids")
+    List<User> findWithRolesByUseridIn(Collection<Long> userids);
+
+    /**
+     * Which of the given usernames are already taken. Used by the bulk import to check a whole chunk of users at once.
+     *
+     * @param usernames the lowercase usernames (String) to check
+     * @return the usernames already taken
+     */
+    @Query(value = "SELECT u.username FROM User u WHERE u.username IN :usernames")
+    List<String> findUsernamesIn(Collection<String> usernames);
+
+    /**
+     * Which of the given primary emails are already taken. Used by the bulk import to check a whole chunk of users at once.
+     *
+     * @param primaryemails the lowercase primary emails (String) to check
+     * @return the primary emails already taken
+     */
+    @Query(value = "SELECT u.primaryemail FROM User u WHERE u.primaryemail IN :primaryemails")
+    List<String> findPrimaryemailsIn(Collection<String> primaryemails);
+
+    /**
+     * The summary of the user with the given primary key. Only the user's own columns are selected.
+     *
+     * @param userid the primary key (long) of the user you seek
+     * @return the summary of the user, if there is one
+     */
+    Optional<UserSummary> findSummaryByUserid(long userid);
+
+    /**
+     * The summary of the user with the given name. Only the user's own columns are selected.
+     *
+     * @param username the name (String) of the user you seek
+     * @return the summary of the user, or null if there is no such user
+     */
+    UserSummary findSummaryByUsername(String username);
+
+    /**
+     * The summaries of the users with the given primary keys, in no particular order. Only the users' own columns are selected.
+     *
+     * @param userids the primary keys (long) of the users you seek
+     * @return the summaries of the users found
+     */
+    List<UserSummary> findSummariesByUseridIn(Collection<Long> userids);
+
+    /**
+     * Keyset (cursor) pagination over the summaries of users, the same as findByUseridGreaterThanOrderByUseridAsc
+     * but selecting only the users' own columns.
+     *
+     * @param userid   the cursor, the primary key (long) of the last user already read. Use 0 to start from the beginning
+     * @param pageable the size of the page to read. Only the page size is used, the page number should always be 0
+     * @return the next page of user summaries in primary key order. An empty list means there are no more users
+     */
+    List<UserSummary> findSummariesByUseridGreaterThanOrderByUseridAsc(
+        long userid,
+        Pageable pageable);
+
+    /**
+     * A page of the summaries of users whose name contains a given substring ignoring case, in primary key order.
+     * Used only until the in memory search index is ready.
+     *
+     * @param name     the substring of the names (String) you seek
+     * @param pageable the page of users to read
+     * @return the page of user summaries whose name contain the given substring ignoring case
+     */
+    List<UserSummary> findSummariesByUsernameContainingIgnoreCaseOrderByUseridAsc(
+        String name,
+        Pageable pageable);
+
+    /**
+     * A page of the summaries of users with an email, primary or not, containing a given substring ignoring case,
+     * in primary key order. Used only until the in memory search index is ready.
+     *
+     * @param email    the substring of the emails (String) you seek
+     * @param pageable the page of users to read
+     * @return the page of user summaries with an email containing the given substring ignoring case
+     */
+    @Query(value = "SELECT DISTINCT u.userid AS userid, u.username AS username, u.primaryemail AS primaryemail " +
+        "FROM User u LEFT JOIN u.useremails ue " +
+        "WHERE LOWER(u.primaryemail) LIKE LOWER(CONCAT('%', :email, '%')) OR LOWER(ue.useremail) LIKE LOWER(CONCAT('%', :email, '%')) " +
+        "ORDER BY u.userid")
+    List<UserSummary> findSummariesByEmailContaining(
+        String email,
+        Pageable pageable);
+
+    /**
+     * The version of the user as returned by GET /users/user/{id}: the user, their useremails,
+     * their user role combinations and those roles. Only the dates and versions are read, no entities are loaded.
+     *
+     * @param userid the primary key (long) of the user
+     * @return the version of the user. The row count is 0 if there is no such user.
+     */
+    @Query(value = "SELECT MAX(v.lastmodifieddate) AS lastmodifieddate, COUNT(*) AS rowcount, COALESCE(SUM(v.version), 0) AS versions FROM (" +
+        "SELECT u.lastmodifieddate, u.version FROM users u WHERE u.userid = :userid " +
+        "UNION ALL SELECT ue.lastmodifieddate, ue.version FROM useremails ue WHERE ue.userid = :userid " +
+        "UNION ALL SELECT ur.lastmodifieddate, ur.version FROM userroles ur WHERE ur.userid = :userid " +
+        "UNION ALL SELECT r.lastmodifieddate, r.version FROM userroles ur JOIN roles r ON r.roleid = ur.roleid WHERE ur.userid = :userid) v",
+        nativeQuery = true)
+    ResourceVersion findVersionByUserid(long userid);
 }
@@ -1,12 +1,54 @@
 package com.lambdaschool.usermodel.repository;
 
+import com.lambdaschool.usermodel.models.ResourceVersion;
 import com.lambdaschool.usermodel.models.Useremail;
+import com.lambdaschool.usermodel.models.UseremailSummary;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
+import java.util.List;
+import java.util.Optional;
+
 /**
  * The CRUD Repository connecting Useremail to the rest of the application
  */
 public interface UseremailRepository
     extends CrudRepository<Useremail, Long>
 {
+    /**
+     * The summaries of all useremails in primary key order. Only the email and the primary key of its user are selected,
+     * the user itself is not read.
+     *
+     * @return the summaries of all useremails
+     */
+    @Query(value = "SELECT ue.useremailid AS useremailid, ue.useremail AS useremail, ue.user.userid AS userid " +
+        "FROM Useremail ue ORDER BY ue.useremailid")
+    List<UseremailSummary> findAllSummaries();
+
+    /**
+     * The summary of the useremail with the given primary key. Only the email and the primary key of its user are selected,
+     * the user itself is not read.
+     *
+     * @param useremailid the primary key (long) of the useremail you seek
+     * @return the summary of the useremail, if there is one
+     */
+    @Query(value = "SELECT ue.useremailid AS useremailid, ue.useremail AS useremail, ue.user.userid AS userid " +
+        "FROM Useremail ue WHERE ue.useremailid = :useremailid")
+    Optional<UseremailSummary> findSummaryById(long useremailid);
+
+    /**
+     * The version of the useremail as returned by GET /useremails/useremail/{id}: the useremail, its user,
+     * the user's user role combinations and those roles. Only the dates and versions are read, no entities are loaded.
+     *
+     * @param useremailid the primary key (long) of the useremail
+     * @return the version of the useremail. The row count is 0 if there is no such useremail.
+     */
+    @Query(value = "SELECT MAX(v.lastmodifieddate) AS lastmodifieddate, COUNT(*) AS rowcount, COALESCE(SUM(v.version), 0) AS versions FROM (" +
+        "SELECT ue.lastmodifieddate, ue.version FROM useremails ue WHERE ue.useremailid = :useremailid " +
+        "UNION ALL SELECT u.lastmodifieddate, u.version FROM useremails ue JOIN users u ON u.userid = ue.userid WHERE ue.useremailid = :useremailid " +
+        "UNION ALL SELECT ur.lastmodifieddate, ur.version FROM useremails ue JOIN userroles ur ON ur.userid = ue.userid WHERE ue.useremailid = :useremailid " +
+        "UNION ALL SELECT r.lastmodifieddate, r.version FROM useremails ue JOIN userroles ur ON ur.userid = ue.userid " +
+        "JOIN roles r ON r.roleid = ur.roleid WHERE ue.useremailid = :useremailid) v",
+        nativeQuery = true)
+    ResourceVersion findVersionByUseremailid(long useremailid);
 }
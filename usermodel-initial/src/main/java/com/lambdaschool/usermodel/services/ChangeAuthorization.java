@@ -0,0 +1,32 @@
+package com.lambdaschool.usermodel.services;
+
+/**
+ * Whether, and why, the current user may change the data of a user
+ */
+public enum ChangeAuthorization
+{
+    /**
+     * The current user is the user whose data is changed
+     */
+    OWNER,
+
+    /**
+     * The current user has the role ADMIN
+     */
+    ADMIN,
+
+    /**
+     * The current user may not change the data
+     */
+    DENIED;
+
+    /**
+     * Tells whether the change may go ahead
+     *
+     * @return true unless the change is denied
+     */
+    public boolean isAllowed()
+    {
+        return this != DENIED;
+    }
+}
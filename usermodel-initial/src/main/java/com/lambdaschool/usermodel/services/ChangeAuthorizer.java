@@ -0,0 +1,84 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.exceptions.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides whether the current user may change the data of a user: users may change their own data,
+ * and admins anyone's.
+ * <p>
+ * This runs on every request that changes a user or their email addresses, so it creates no objects.
+ * The decision is a constant, the user names are compared in place, and the admin check is a bit test
+ * done by the role catalog. A denial is reported with one exception created up front, without a stack trace.
+ */
+@Component
+public class ChangeAuthorizer
+{
+    /**
+     * Thrown whenever a change is denied. It has no stack trace and names no user, so it can be shared.
+     */
+    private static final ResourceNotFoundException NOT_AUTHORIZED = new ResourceNotFoundException("Not authorized to make change",
+        false);
+
+    /**
+     * Tells whether the current user is an admin
+     */
+    @Autowired
+    private RoleCatalog roleCatalog;
+
+    /**
+     * Decides whether the current user may change the data of the given user
+     *
+     * @param username The user name of the user whose data is to be changed
+     * @return OWNER or ADMIN if the change may go ahead, otherwise DENIED
+     */
+    public ChangeAuthorization decide(String username)
+    {
+        return decide(SecurityContextHolder.getContext()
+                .getAuthentication(),
+            username);
+    }
+
+    /**
+     * Decides whether the given authentication may change the data of the given user
+     *
+     * @param authentication The authentication of the user making the change, null if nobody is signed on
+     * @param username       The user name of the user whose data is to be changed
+     * @return OWNER or ADMIN if the change may go ahead, otherwise DENIED
+     */
+    public ChangeAuthorization decide(
+        Authentication authentication,
+        String username)
+    {
+        if (authentication == null)
+        {
+            return ChangeAuthorization.DENIED;
+        }
+        if (username.equalsIgnoreCase(authentication.getName()))
+        {
+            return ChangeAuthorization.OWNER;
+        }
+        if (roleCatalog.isAdmin(authentication))
+        {
+            return ChangeAuthorization.ADMIN;
+        }
+        return ChangeAuthorization.DENIED;
+    }
+
+    /**
+     * Stops a change the current user may not make
+     *
+     * @param username The user name of the user whose data is to be changed
+     * @throws ResourceNotFoundException without a stack trace, if the change is denied
+     */
+    public void checkAllowed(String username)
+    {
+        if (!decide(username).isAllowed())
+        {
+            throw NOT_AUTHORIZED;
+        }
+    }
+}
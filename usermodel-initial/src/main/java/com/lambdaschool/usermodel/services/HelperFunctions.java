@@ -1,6 +1,8 @@
 package com.lambdaschool.usermodel.services;
 
+import com.lambdaschool.usermodel.models.ResourceVersion;
 import com.lambdaschool.usermodel.models.ValidationError;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.List;
 
@@ -26,4 +28,45 @@ public interface HelperFunctions
      * @return true if the user can make the modifications, otherwise an exception is thrown
      */
     boolean isAuthorizedToMakeChange(String username);
+
+    /**
+     * Answers a conditional GET from the version of the resource asked for, before the resource itself is read.
+     * The ETag header is derived from the version and added to the response. No Last-Modified header is sent,
+     * so clients revalidate with If-None-Match. If it shows the client already has this version,
+     * the response status is set to 304 Not Modified.
+     *
+     * @param version The version of the resource asked for. If null, nothing is checked and false is returned.
+     * @param request The request, with its response
+     * @return true if the client already has this version, in which case no body should be sent
+     */
+    boolean isNotModified(
+        ResourceVersion version,
+        ServletWebRequest request);
+
+    /**
+     * The ETag of the given version of a resource, as sent with GET
+     *
+     * @param version The version of the resource
+     * @return The strong ETag (String), quotes included
+     */
+    String getEtag(ResourceVersion version);
+
+    /**
+     * Checks the ETags of a request's If-Match header against the current version of the resource to change
+     *
+     * @param version The current version of the resource
+     * @param ifMatch The value of the If-Match header. If null, nothing is checked.
+     * @throws com.lambdaschool.usermodel.exceptions.PreconditionFailedException if none of the ETags is the current one
+     */
+    void checkIfMatch(
+        ResourceVersion version,
+        String ifMatch);
+
+    /**
+     * Whether the client accepts gzip. gzip must be named in the Accept-Encoding header with a quality above 0.
+     *
+     * @param acceptEncoding The Accept-Encoding header (String), may be null
+     * @return true if the response may be compressed with gzip
+     */
+    boolean acceptsGzip(String acceptEncoding);
 }
@@ -1,16 +1,22 @@
 package com.lambdaschool.usermodel.services;
 
-import com.lambdaschool.usermodel.exceptions.ResourceNotFoundException;
+import com.lambdaschool.usermodel.exceptions.ApplicationException;
+import com.lambdaschool.usermodel.exceptions.PreconditionFailedException;
+import com.lambdaschool.usermodel.models.ResourceVersion;
 import com.lambdaschool.usermodel.models.ValidationError;
 import org.hibernate.exception.ConstraintViolationException;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletResponse;
+import java.sql.Timestamp;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 @Service(value = "helperFunctions")
@@ -18,55 +24,75 @@ public class HelperFunctionsImpl
     implements HelperFunctions
 {
     /**
-     * A public field used to store data from another API. This will have to be populated each time the application is run.
-     * Population is done manually for each country code using an endpoint.
+     * How deep into a chain of causes constraint violations are looked for
      */
-    public List<ValidationError> getConstraintViolation(Throwable cause)
+    private static final int MAXIMUM_CAUSE_DEPTH = 32;
+
+    /**
+     * What each class of exception tells the search for constraint violations, worked out once per class
+     */
+    private static final ClassValue<ViolationSource> VIOLATION_SOURCES = new ClassValue<ViolationSource>()
     {
-        // Find any data violations that might be associated with the error and report them
-        // data validations get wrapped in other exceptions as we work through the Spring
-        // exception chain. Hence we have to search the entire Spring Exception Stack
-        // to see if we have any violation constraints.
-        while ((cause != null) && !(cause instanceof org.hibernate.exception.ConstraintViolationException || cause instanceof MethodArgumentNotValidException))
+        @Override
+        protected ViolationSource computeValue(Class<?> type)
         {
-            System.out.println(cause.getClass()
-                .toString());
-            cause = cause.getCause();
+            if (ConstraintViolationException.class.isAssignableFrom(type))
+            {
+                return ViolationSource.CONSTRAINT_VIOLATION;
+            }
+            if (MethodArgumentNotValidException.class.isAssignableFrom(type))
+            {
+                return ViolationSource.INVALID_ARGUMENT;
+            }
+            if (ApplicationException.class.isAssignableFrom(type))
+            {
+                // thrown by this application, never with a cause
+                return ViolationSource.NONE;
+            }
+            return ViolationSource.CAUSE;
         }
+    };
 
+    /**
+     * Decides whether the current user may change a user's data
+     */
+    @Autowired
+    private ChangeAuthorizer changeAuthorizer;
+
+    @Override
+    public List<ValidationError> getConstraintViolation(Throwable cause)
+    {
         List<ValidationError> listVE = new ArrayList<>();
 
-        // we know that cause either null or an instance of ConstraintViolationException
-        if (cause != null)
+        // Find any data violations that might be associated with the error and report them.
+        // Data validations get wrapped in other exceptions as we work through the Spring exception chain,
+        // so the causes are searched until one is a violation or cannot lead to one.
+        for (int depth = 0; cause != null && depth < MAXIMUM_CAUSE_DEPTH; depth++)
         {
-            if (cause instanceof org.hibernate.exception.ConstraintViolationException)
+            switch (VIOLATION_SOURCES.get(cause.getClass()))
             {
-                org.hibernate.exception.ConstraintViolationException ex = (ConstraintViolationException) cause;
-                ValidationError newVe = new ValidationError();
-                newVe.setCode(ex.getMessage());
-                newVe.setMessage(ex.getConstraintName());
-                listVE.add(newVe);
-            } else
-            {
-                if (cause instanceof MethodArgumentNotValidException)
-                {
-                    MethodArgumentNotValidException ex = (MethodArgumentNotValidException) cause;
-                    List<FieldError> fieldErrors = ex.getBindingResult()
+                case CONSTRAINT_VIOLATION:
+                    ConstraintViolationException cve = (ConstraintViolationException) cause;
+                    ValidationError newVe = new ValidationError();
+                    newVe.setCode(cve.getMessage());
+                    newVe.setMessage(cve.getConstraintName());
+                    listVE.add(newVe);
+                    return listVE;
+                case INVALID_ARGUMENT:
+                    List<FieldError> fieldErrors = ((MethodArgumentNotValidException) cause).getBindingResult()
                         .getFieldErrors();
                     for (FieldError err : fieldErrors)
                     {
-                        ValidationError newVe = new ValidationError();
-                        newVe.setCode(err.getField());
-                        newVe.setMessage(err.getDefaultMessage());
-                        listVE.add(newVe);
+                        ValidationError fieldVe = new ValidationError();
+                        fieldVe.setCode(err.getField());
+                        fieldVe.setMessage(err.getDefaultMessage());
+                        listVE.add(fieldVe);
                     }
-                } else
-                {
-                    System.out.println("Error in producing constraint violations exceptions. " +
-                        "If we see this in the console a major logic error has occurred in the " +
-                        "helperfunction.getConstraintViolation method that we should investigate. " +
-                        "Note the application will keep running as this only affects exception reporting!");
-                }
+                    return listVE;
+                case NONE:
+                    return listVE;
+                default:
+                    cause = cause.getCause();
             }
         }
         return listVE;
@@ -75,22 +101,138 @@ public class HelperFunctionsImpl
     @Override
     public boolean isAuthorizedToMakeChange(String username)
     {
-        // Check to see if the user whose information being requested is the current user
-        // Check to see if the requesting user is an admin
-        // if either is true, return true
-        // otherwise stop the process and throw an exception
-        Authentication authentication = SecurityContextHolder.getContext()
-            .getAuthentication();
-        if (username.equalsIgnoreCase(authentication.getName()
-            .toLowerCase()) || authentication.getAuthorities()
-            .contains(new SimpleGrantedAuthority("ROLE_ADMIN")))
+        // the current user must either be the user being changed or an admin,
+        // otherwise the whole process is stopped with an exception
+        changeAuthorizer.checkAllowed(username);
+        return true;
+    }
+
+    @Override
+    public boolean isNotModified(
+        ResourceVersion version,
+        ServletWebRequest request)
+    {
+        if (version == null)
+        {
+            return false;
+        }
+
+        // let clients keep the response, as long as they check it is still current before using it
+        HttpServletResponse response = request.getResponse();
+        if (response != null)
+        {
+            response.setHeader(HttpHeaders.CACHE_CONTROL,
+                "private, no-cache");
+        }
+
+        // no Last-Modified: deleting a child row leaves the latest date as it was, or moves it back,
+        // so only the ETag, which also counts the rows, tells whether the client's copy is current
+        return request.checkNotModified(getEtag(version));
+    }
+
+    @Override
+    public String getEtag(ResourceVersion version)
+    {
+        Date lastmodified = version.getLastmodifieddate();
+        long stamp = 0;
+        if (lastmodified instanceof Timestamp)
         {
-            // this user can make this change
-            return true;
-        } else
+            // keep the nanoseconds the database stores, so two changes in the same millisecond still get different tags
+            stamp = Math.floorDiv(lastmodified.getTime(),
+                1000) * 1_000_000_000L + ((Timestamp) lastmodified).getNanos();
+        } else if (lastmodified != null)
         {
-            // stop user is not authorized to make this change so stop the whole process and throw an exception
-            throw new ResourceNotFoundException(authentication.getName() + " not authorized to make change");
+            stamp = lastmodified.getTime();
         }
+        // the versions tell apart changes the date and count cannot, such as two in the same tick of the clock
+        return "\"" + Long.toHexString(stamp) + "-" + Long.toHexString(version.getRowcount()) + "-" +
+            Long.toHexString(version.getVersions()) + "\"";
+    }
+
+    @Override
+    public void checkIfMatch(
+        ResourceVersion version,
+        String ifMatch)
+    {
+        if (ifMatch == null)
+        {
+            return;
+        }
+
+        String etag = getEtag(version);
+        for (String candidate : ifMatch.split(","))
+        {
+            // If-Match compares strongly, so weak ETags (W/"...") never match
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag))
+            {
+                return;
+            }
+        }
+        throw new PreconditionFailedException("The resource has changed since it was read. Its ETag is now " + etag);
+    }
+
+    @Override
+    public boolean acceptsGzip(String acceptEncoding)
+    {
+        if (acceptEncoding == null)
+        {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(","))
+        {
+            String[] parts = coding.split(";");
+            if (!parts[0].trim()
+                .equalsIgnoreCase("gzip"))
+            {
+                continue;
+            }
+
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++)
+            {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q="))
+                {
+                    try
+                    {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e)
+                    {
+                        // a quality that cannot be read is not taken as consent to compress
+                        quality = 0;
+                    }
+                }
+            }
+            return quality > 0;
+        }
+        return false;
+    }
+
+    /**
+     * What an exception tells the search for constraint violations
+     */
+    private enum ViolationSource
+    {
+        /**
+         * It is a Hibernate constraint violation
+         */
+        CONSTRAINT_VIOLATION,
+
+        /**
+         * It is a failed validation of a request body
+         */
+        INVALID_ARGUMENT,
+
+        /**
+         * Neither it nor its causes can be a violation
+         */
+        NONE,
+
+        /**
+         * It is not a violation, but its cause may be
+         */
+        CAUSE
     }
 }
@@ -0,0 +1,298 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.models.UserRoles;
+import com.lambdaschool.usermodel.repository.RoleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in memory catalog of the roles that exist, keyed by primary key and by uppercase name.
+ * <p>
+ * Roles hardly ever change, so the catalog is read without locks or queries. It is an immutable snapshot
+ * that is replaced as a whole: loaded once the application is ready, and loaded again whenever a role is saved,
+ * renamed or deleted, after that transaction commits.
+ * <p>
+ * A role missing from the catalog may simply have been added since the snapshot was taken,
+ * so callers should look it up in the database before deciding it does not exist.
+ * <p>
+ * The catalog also holds one canonical Spring Security authority, ROLE_ followed by the uppercase role name,
+ * for each role name it has been asked about, and numbers them. Signed on users carry a bit set of the numbers
+ * of their authorities, so checking whether a user is an admin is a single bit test.
+ * Authorities are kept for the life of the application, even after their role is renamed or deleted,
+ * so their numbers never change.
+ */
+@Component
+public class RoleCatalog
+{
+    /**
+     * Connects the catalog to the Role table
+     */
+    @Autowired
+    private RoleRepository rolerepos;
+
+    /**
+     * Used to read the roles in a transaction of their own
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * The current snapshot. Empty until the roles are first loaded.
+     */
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap());
+
+    /**
+     * The canonical authorities, keyed by role name as stored
+     */
+    private final ConcurrentMap<String, InternedAuthority> authoritiesByRoleName = new ConcurrentHashMap<>();
+
+    /**
+     * The canonical authorities, keyed by authority, ROLE_ followed by the uppercase role name
+     */
+    private final ConcurrentMap<String, InternedAuthority> authoritiesByName = new ConcurrentHashMap<>();
+
+    /**
+     * The number given to the next new authority
+     */
+    private final AtomicInteger nextBit = new AtomicInteger();
+
+    /**
+     * The authority of the ADMIN role, numbered before any other so its bit is always the same
+     */
+    private final InternedAuthority admin = intern("ADMIN");
+
+    /**
+     * Loads all roles from the database and publishes them as the new snapshot
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload()
+    {
+        TransactionTemplate newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        newTransaction.setReadOnly(true);
+        Map<Long, String> namesById = newTransaction.execute(status ->
+        {
+            Map<Long, String> names = new HashMap<>();
+            for (Role role : rolerepos.findAll())
+            {
+                names.put(role.getRoleid(),
+                    role.getName());
+            }
+            return names;
+        });
+        snapshot = new Snapshot(namesById);
+    }
+
+    /**
+     * Loads the roles again once the current transaction commits, or straight away if there is no transaction.
+     * Call this whenever a role is saved, renamed or deleted.
+     */
+    public void reloadAfterCommit()
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    reload();
+                }
+            });
+        } else
+        {
+            reload();
+        }
+    }
+
+    /**
+     * Tells whether a role with the given primary key is in the catalog
+     *
+     * @param roleid The primary key (long) of the role
+     * @return true if the role is in the catalog
+     */
+    public boolean contains(long roleid)
+    {
+        return snapshot.namesById.containsKey(roleid);
+    }
+
+    /**
+     * Finds the primary key of the role with the given name, ignoring case
+     *
+     * @param name The name (String) of the role
+     * @return The primary key of the role, or null if no role in the catalog has that name
+     */
+    public Long findRoleid(String name)
+    {
+        return snapshot.idsByName.get(name.toUpperCase());
+    }
+
+    /**
+     * The canonical authority of the role with the given name
+     *
+     * @param roleName The name (String) of the role
+     * @return The authority ROLE_ followed by the uppercase role name, the same instance every time
+     */
+    public SimpleGrantedAuthority findAuthority(String roleName)
+    {
+        return intern(roleName).authority;
+    }
+
+    /**
+     * The canonical authorities of the roles of the given user
+     *
+     * @param user The user whose roles are wanted
+     * @return A new list of the authorities of the user
+     */
+    public List<SimpleGrantedAuthority> findAuthorities(User user)
+    {
+        List<SimpleGrantedAuthority> authorities = new ArrayList<>(user.getRoles()
+            .size());
+        for (UserRoles r : user.getRoles())
+        {
+            authorities.add(findAuthority(r.getRole()
+                .getName()));
+        }
+        return authorities;
+    }
+
+    /**
+     * The bits of the given authorities. Authorities that are not the authority of any role are left out.
+     *
+     * @param authorities The authorities of a user
+     * @return A new bit set with the bit of each authority set
+     */
+    public BitSet findAuthorityBits(Collection<? extends GrantedAuthority> authorities)
+    {
+        BitSet bits = new BitSet();
+        for (GrantedAuthority authority : authorities)
+        {
+            InternedAuthority interned = authoritiesByName.get(authority.getAuthority());
+            if (interned != null)
+            {
+                bits.set(interned.bit);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Tells whether the given authentication has the ADMIN role. For a user signed on through this application
+     * this is a single bit test. Anyone else, for example a user read back from a stored token,
+     * has their authorities compared by name.
+     *
+     * @param authentication The authentication of the current user
+     * @return true if the user is an admin
+     */
+    public boolean isAdmin(Authentication authentication)
+    {
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof SecurityUser)
+        {
+            BitSet bits = ((SecurityUser) principal).getAuthorityBits();
+            if (bits != null)
+            {
+                return bits.get(admin.bit);
+            }
+        }
+
+        String adminAuthority = admin.authority.getAuthority();
+        for (GrantedAuthority authority : authentication.getAuthorities())
+        {
+            if (adminAuthority.equals(authority.getAuthority()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the canonical authority of a role, creating and numbering it the first time the role is seen
+     *
+     * @param roleName The name (String) of the role
+     * @return The canonical authority
+     */
+    private InternedAuthority intern(String roleName)
+    {
+        InternedAuthority interned = authoritiesByRoleName.get(roleName);
+        if (interned == null)
+        {
+            interned = authoritiesByName.computeIfAbsent("ROLE_" + roleName.toUpperCase(),
+                name -> new InternedAuthority(new SimpleGrantedAuthority(name),
+                    nextBit.getAndIncrement()));
+            authoritiesByRoleName.putIfAbsent(roleName,
+                interned);
+        }
+        return interned;
+    }
+
+    /**
+     * A canonical authority and its number
+     */
+    private static class InternedAuthority
+    {
+        final SimpleGrantedAuthority authority;
+
+        /**
+         * The number of the authority, which is its bit in the bit set of each user
+         */
+        final int bit;
+
+        InternedAuthority(
+            SimpleGrantedAuthority authority,
+            int bit)
+        {
+            this.authority = authority;
+            this.bit = bit;
+        }
+    }
+
+    /**
+     * An immutable view of the roles at one point in time
+     */
+    private static class Snapshot
+    {
+        /**
+         * The uppercase name of each role, by primary key
+         */
+        final Map<Long, String> namesById;
+
+        /**
+         * The primary key of each role, by uppercase name
+         */
+        final Map<String, Long> idsByName;
+
+        Snapshot(Map<Long, String> namesById)
+        {
+            Map<String, Long> ids = new HashMap<>();
+            namesById.forEach((id, name) -> ids.put(name.toUpperCase(),
+                id));
+            this.namesById = Collections.unmodifiableMap(new HashMap<>(namesById));
+            this.idsByName = Collections.unmodifiableMap(ids);
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.lambdaschool.usermodel.services;
 
+import com.lambdaschool.usermodel.models.ResourceVersion;
 import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.models.RoleSummary;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The service that works with the Role Model.
@@ -26,6 +30,57 @@ public interface RoleService
      */
     Role findRoleById(long id);
 
+    /**
+     * Returns the Roles matching the given primary keys, looked up together rather than one at a time.
+     * Roles in the role catalog are only counted, to be sure they still exist, and returned as references,
+     * only read if used. The rest are read with a single query. If any id is not found,
+     * the same not found error as findRoleById is raised.
+     *
+     * @param ids The primary keys (long) of the Roles you seek
+     * @return The Roles you seek keyed by their primary key
+     */
+    Map<Long, Role> findRolesByIds(Collection<Long> ids);
+
+    /**
+     * Returns the summaries, primary key and name, of all roles in primary key order
+     *
+     * @return list of the summaries of all roles
+     */
+    List<RoleSummary> findAllSummaries();
+
+    /**
+     * Return the summary, primary key and name, of the Role with the given primary key
+     *
+     * @param id The primary key (long) of the Role you seek
+     * @return The summary of the Role you seek
+     */
+    RoleSummary findSummaryById(long id);
+
+    /**
+     * Return the summary, primary key and name, of the Role with the given name
+     *
+     * @param name The name (String) of the role you seek
+     * @return The summary of the Role you seek
+     */
+    RoleSummary findSummaryByName(String name);
+
+    /**
+     * Returns the version of the list of all roles, covering the roles and the users listed with them.
+     * Only the version is read, not the roles.
+     *
+     * @return The version of the list of all roles
+     */
+    ResourceVersion findVersion();
+
+    /**
+     * Returns the version of the Role with the given primary key, covering the role and the users listed with it.
+     * Only the version is read, not the role.
+     *
+     * @param id The primary key (long) of the Role you seek
+     * @return The version of the Role you seek
+     */
+    ResourceVersion findVersionById(long id);
+
     /**
      * Given a complete Role object, saved that Role object in the database.
      * If a primary key is provided, the record is completely replaced
@@ -46,6 +101,16 @@ public interface RoleService
      */
     Role findByName(String name);
 
+    /**
+     * Returns the Role with the given name to be assigned to a user. A role in the role catalog is returned as a
+     * reference, only read if used, once its primary key is known to still exist. Otherwise the role is read as by
+     * findByName.
+     *
+     * @param name The name (String) of the role you seek
+     * @return The Role matching the given name
+     */
+    Role findReferenceByName(String name);
+
     /**
      * Deletes all record and their associated records from the database
      */
@@ -61,4 +126,19 @@ public interface RoleService
     Role update(
         long id,
         Role role);
+
+    /**
+     * Same as update(long, Role), but the role is only renamed if its ETag is one of those given.
+     * The role is locked while it is checked and renamed, so two concurrent renames cannot both pass the check.
+     *
+     * @param id      The primary key (long) of the role you wish to update
+     * @param role    The role object containing the new name - only roles name can be updated through this process
+     * @param ifMatch the ETags (String) the client read the role with, as sent in If-Match. If null, the ETag is not checked.
+     * @return The complete role with the new name
+     * @throws com.lambdaschool.usermodel.exceptions.PreconditionFailedException if the role's ETag is not one of those given
+     */
+    Role update(
+        long id,
+        Role role,
+        String ifMatch);
 }
\ No newline at end of file
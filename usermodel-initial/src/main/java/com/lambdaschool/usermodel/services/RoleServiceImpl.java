@@ -2,7 +2,9 @@ package com.lambdaschool.usermodel.services;
 
 import com.lambdaschool.usermodel.exceptions.ResourceFoundException;
 import com.lambdaschool.usermodel.exceptions.ResourceNotFoundException;
+import com.lambdaschool.usermodel.models.ResourceVersion;
 import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.models.RoleSummary;
 import com.lambdaschool.usermodel.repository.RoleRepository;
 import com.lambdaschool.usermodel.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,8 +12,14 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implements the RoleService Interface
@@ -39,6 +47,30 @@ public class RoleServiceImpl
     @Autowired
     private UserAuditing userAuditing;
 
+    /**
+     * Cached security user details carry the role names, so must be dropped when a role changes
+     */
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    /**
+     * Checks the ETag a role was read with before it changes
+     */
+    @Autowired
+    private HelperFunctions helperFunctions;
+
+    /**
+     * The roles that exist, so lookups by id or name need not go to the database
+     */
+    @Autowired
+    private RoleCatalog roleCatalog;
+
+    /**
+     * Used to refer to roles in the catalog without reading them
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Override
     public List<Role> findAll()
     {
@@ -58,7 +90,64 @@ public class RoleServiceImpl
     public Role findRoleById(long id)
     {
         return rolerepos.findById(id)
-            .orElseThrow(() -> new ResourceNotFoundException("Role id " + id + " not found!"));
+            .orElseThrow(() -> ResourceNotFoundException.withoutStackTrace("Role id %d not found!",
+                id));
+    }
+
+    @Override
+    public Map<Long, Role> findRolesByIds(Collection<Long> ids)
+    {
+        Map<Long, Role> roles = new HashMap<>();
+        List<Long> catalogued = new ArrayList<>();
+        List<Long> unknown = new ArrayList<>();
+        for (long id : ids)
+        {
+            if (roleCatalog.contains(id))
+            {
+                catalogued.add(id);
+            } else
+            {
+                unknown.add(id);
+            }
+        }
+
+        // counting is enough to know the catalogued roles still exist, without reading them
+        if (!catalogued.isEmpty())
+        {
+            if (rolerepos.countByRoleidIn(catalogued) == catalogued.size())
+            {
+                for (long id : catalogued)
+                {
+                    roles.put(id,
+                        entityManager.getReference(Role.class,
+                            id));
+                }
+            } else
+            {
+                // a role was deleted behind the catalog's back
+                roleCatalog.reload();
+                unknown.addAll(catalogued);
+            }
+        }
+
+        // one IN query for all the roles not in the catalog
+        if (!unknown.isEmpty())
+        {
+            for (Role role : rolerepos.findAllById(unknown))
+            {
+                roles.put(role.getRoleid(),
+                    role);
+            }
+            for (long id : unknown)
+            {
+                if (!roles.containsKey(id))
+                {
+                    throw ResourceNotFoundException.withoutStackTrace("Role id %d not found!",
+                        id);
+                }
+            }
+        }
+        return roles;
     }
 
     @Override
@@ -71,8 +160,65 @@ public class RoleServiceImpl
             return rr;
         } else
         {
-            throw new ResourceNotFoundException(name);
+            throw ResourceNotFoundException.withoutStackTrace("%s",
+                name);
+        }
+    }
+
+    @Override
+    public Role findReferenceByName(String name)
+    {
+        Long roleid = roleCatalog.findRoleid(name);
+        if (roleid != null && rolerepos.existsById(roleid))
+        {
+            return entityManager.getReference(Role.class,
+                roleid);
         }
+        return findByName(name);
+    }
+
+    @Override
+    public List<RoleSummary> findAllSummaries()
+    {
+        return rolerepos.findSummariesByOrderByRoleidAsc();
+    }
+
+    @Override
+    public RoleSummary findSummaryById(long id)
+    {
+        return rolerepos.findSummaryByRoleid(id)
+            .orElseThrow(() -> ResourceNotFoundException.withoutStackTrace("Role id %d not found!",
+                id));
+    }
+
+    @Override
+    public RoleSummary findSummaryByName(String name)
+    {
+        RoleSummary summary = rolerepos.findSummaryByNameIgnoreCase(name);
+        if (summary == null)
+        {
+            throw ResourceNotFoundException.withoutStackTrace("%s",
+                name);
+        }
+        return summary;
+    }
+
+    @Override
+    public ResourceVersion findVersion()
+    {
+        return rolerepos.findVersion();
+    }
+
+    @Override
+    public ResourceVersion findVersionById(long id)
+    {
+        ResourceVersion version = rolerepos.findVersionByRoleid(id);
+        if (version.getRowcount() == 0)
+        {
+            throw ResourceNotFoundException.withoutStackTrace("Role id %d not found!",
+                id);
+        }
+        return version;
     }
 
     @Transactional
@@ -85,6 +231,7 @@ public class RoleServiceImpl
             throw new ResourceFoundException("User Roles are not updated through Role.");
         }
 
+        roleCatalog.reloadAfterCommit();
         return rolerepos.save(role);
     }
 
@@ -92,6 +239,8 @@ public class RoleServiceImpl
     @Override
     public void deleteAll()
     {
+        userDetailsCache.invalidateAll();
+        roleCatalog.reloadAfterCommit();
         rolerepos.deleteAll();
     }
 
@@ -100,6 +249,18 @@ public class RoleServiceImpl
     public Role update(
         long id,
         Role role)
+    {
+        return update(id,
+            role,
+            null);
+    }
+
+    @Transactional
+    @Override
+    public Role update(
+        long id,
+        Role role,
+        String ifMatch)
     {
         if (role.getName() == null)
         {
@@ -112,12 +273,25 @@ public class RoleServiceImpl
             throw new ResourceFoundException("User Roles are not updated through Role. See endpoint POST: users/user/{userid}/role/{roleid}");
         }
 
-        Role newRole = findRoleById(id); // see if id exists
+        // the rename is a native update, so lock the role until it commits rather than relying on its version
+        Role newRole = entityManager.find(Role.class,
+            id,
+            LockModeType.PESSIMISTIC_WRITE);
+        if (newRole == null)
+        {
+            throw ResourceNotFoundException.withoutStackTrace("Role id %d not found!",
+                id);
+        }
+        helperFunctions.checkIfMatch(rolerepos.findVersionByRoleid(id),
+            ifMatch);
 
         rolerepos.updateRoleName(userAuditing.getCurrentAuditor()
                 .get(),
             id,
             role.getName());
-        return findRoleById(id);
+        userDetailsCache.invalidateAll();
+        roleCatalog.reloadAfterCommit();
+        entityManager.refresh(newRole);
+        return newRole;
     }
 }
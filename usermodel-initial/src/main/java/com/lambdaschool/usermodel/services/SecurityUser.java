@@ -0,0 +1,70 @@
+package com.lambdaschool.usermodel.services;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * The security user details of a signed on user, along with the bits the role catalog gave each of their authorities.
+ * Checking an authority is then a single bit test rather than a search of the authority list.
+ * <p>
+ * The bits only mean something to the role catalog of the running application, so they are not serialized.
+ * A user read back from a stored token has no bits and its authorities are checked by name instead.
+ */
+public class SecurityUser
+    extends User
+{
+    /**
+     * The bits of the authorities of this user. Null once this user has been serialized and read back.
+     */
+    private final transient BitSet authorityBits;
+
+    /**
+     * Creates the security user details
+     *
+     * @param username      The name of the user
+     * @param password      The hashed password of the user
+     * @param authorities   The authorities of the user, as interned by the role catalog
+     * @param authorityBits The bits of those authorities in the role catalog. Not to be changed afterwards.
+     */
+    public SecurityUser(
+        String username,
+        String password,
+        Collection<? extends GrantedAuthority> authorities,
+        BitSet authorityBits)
+    {
+        super(username,
+            password,
+            authorities);
+        this.authorityBits = authorityBits;
+    }
+
+    /**
+     * Creates a copy of the given security user details, with the same authorities and the same bits
+     *
+     * @param securityUser The security user details to copy
+     */
+    public SecurityUser(SecurityUser securityUser)
+    {
+        super(securityUser.getUsername(),
+            securityUser.getPassword(),
+            securityUser.isEnabled(),
+            securityUser.isAccountNonExpired(),
+            securityUser.isCredentialsNonExpired(),
+            securityUser.isAccountNonLocked(),
+            securityUser.getAuthorities());
+        this.authorityBits = securityUser.authorityBits;
+    }
+
+    /**
+     * The bits of the authorities of this user, not to be changed
+     *
+     * @return the bits, or null if they are not known
+     */
+    BitSet getAuthorityBits()
+    {
+        return authorityBits;
+    }
+}
@@ -4,20 +4,27 @@ import com.lambdaschool.usermodel.exceptions.ResourceNotFoundException;
 import com.lambdaschool.usermodel.models.User;
 import com.lambdaschool.usermodel.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 // make sure the user that is in the import be the one from this application, not core security
 // import org.springframework.security.core.userdetails.User;
 
 /**
  * This implements User Details Service that allows us to authenticate a user.
+ * It also implements User Details Password Service, so a password stored with outdated hashing settings
+ * is hashed again with the current settings the next time that user signs on.
  */
 @Service(value = "securityUserService")
 public class SecurityUserServiceImpl
-    implements UserDetailsService
+    implements UserDetailsService,
+               UserDetailsPasswordService
 {
     /**
      * Ties this implementation to the User Repository so we can find a user in the database.
@@ -26,7 +33,20 @@ public class SecurityUserServiceImpl
     private UserRepository userrepos;
 
     /**
-     * Verifies that the user is correct and if so creates the authenticated user
+     * Recently loaded user details, so repeated logins do not go back to the database
+     */
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    /**
+     * Holds the canonical authority of each role, and the bit each authority has
+     */
+    @Autowired
+    private RoleCatalog roleCatalog;
+
+    /**
+     * Verifies that the user is correct and if so creates the authenticated user.
+     * The user details are served from the user details cache when possible.
      *
      * @param s The user name we are look for
      * @return a security user detail that is now an authenticated user
@@ -37,14 +57,65 @@ public class SecurityUserServiceImpl
     public UserDetails loadUserByUsername(String s)
         throws
         ResourceNotFoundException
+    {
+        return userDetailsCache.get(s,
+            this::findUserDetails);
+    }
+
+    /**
+     * Replaces the stored password of a user who just signed on successfully with one hashed using the current settings.
+     * Spring Security calls this when the password encoder reports the stored hash should be upgraded.
+     *
+     * @param user        The security user details of the user who signed on
+     * @param newPassword The password hashed with the current settings
+     * @return The security user details with the new password
+     * @throws ResourceNotFoundException if the user name is not found
+     */
+    @Transactional
+    @Override
+    public UserDetails updatePassword(
+        UserDetails user,
+        String newPassword)
+        throws
+        ResourceNotFoundException
+    {
+        User currentUser = userrepos.findByUsername(user.getUsername()
+            .toLowerCase());
+        if (currentUser == null)
+        {
+            throw ResourceNotFoundException.withoutStackTrace("Invalid username or password.");
+        }
+        currentUser.setPasswordNoEncrypt(newPassword);
+        userrepos.save(currentUser);
+        userDetailsCache.invalidate(user.getUsername());
+
+        return new SecurityUser(user.getUsername(),
+            newPassword,
+            user.getAuthorities(),
+            roleCatalog.findAuthorityBits(user.getAuthorities()));
+    }
+
+    /**
+     * Reads the user from the database and creates the security user details from it.
+     * The authorities are the canonical ones held by the role catalog, along with their bits.
+     *
+     * @param s The user name we are look for
+     * @return a security user detail for the given user
+     * @throws ResourceNotFoundException if the user name is not found
+     */
+    private SecurityUser findUserDetails(String s)
+        throws
+        ResourceNotFoundException
     {
         User user = userrepos.findByUsername(s.toLowerCase());
         if (user == null)
         {
-            throw new ResourceNotFoundException("Invalid username or password.");
+            throw ResourceNotFoundException.withoutStackTrace("Invalid username or password.");
         }
-        return new org.springframework.security.core.userdetails.User(user.getUsername(),
+        List<SimpleGrantedAuthority> authorities = roleCatalog.findAuthorities(user);
+        return new SecurityUser(user.getUsername(),
             user.getPassword(),
-            user.getAuthority());
+            authorities,
+            roleCatalog.findAuthorityBits(authorities));
     }
 }
@@ -0,0 +1,19 @@
+package com.lambdaschool.usermodel.services;
+
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+
+/**
+ * The service that issues access tokens from within the application, without going through the /login endpoint
+ */
+public interface TokenService
+{
+    /**
+     * Issues an access token for the given user to our client application, just as the /login endpoint
+     * would for a password grant. The password is not checked, so only call this for a user whose
+     * identity is already established, such as a user who has just been created.
+     *
+     * @param username The username (String) of the user the token is for
+     * @return The new access token
+     */
+    OAuth2AccessToken createAccessToken(String username);
+}
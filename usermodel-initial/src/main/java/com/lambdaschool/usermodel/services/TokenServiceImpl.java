@@ -0,0 +1,88 @@
+package com.lambdaschool.usermodel.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.util.OAuth2Utils;
+import org.springframework.security.oauth2.provider.ClientDetails;
+import org.springframework.security.oauth2.provider.ClientDetailsService;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+import org.springframework.security.oauth2.provider.TokenRequest;
+import org.springframework.security.oauth2.provider.request.DefaultOAuth2RequestFactory;
+import org.springframework.security.oauth2.provider.token.AuthorizationServerTokenServices;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Implements the TokenService Interface
+ */
+@Service(value = "tokenService")
+public class TokenServiceImpl
+    implements TokenService
+{
+    /**
+     * The client id of our client application. It is read from the environment variable OAUTHCLIENTID
+     */
+    private static final String CLIENT_ID = System.getenv("OAUTHCLIENTID");
+
+    /**
+     * The grant type recorded with the tokens issued here. It is the same as for tokens issued through /login
+     */
+    private static final String GRANT_TYPE_PASSWORD = "password";
+
+    /**
+     * The authorization server's token services, which create and store the tokens
+     */
+    @Autowired
+    private AuthorizationServerTokenServices tokenServices;
+
+    /**
+     * Connects this service to the client applications the authorization server knows about
+     */
+    @Autowired
+    private ClientDetailsService clientDetailsService;
+
+    /**
+     * Connects this service to the user details used by Spring Security
+     */
+    @Autowired
+    private UserDetailsService securityUserService;
+
+    @Override
+    public OAuth2AccessToken createAccessToken(String username)
+    {
+        ClientDetails client = clientDetailsService.loadClientByClientId(CLIENT_ID);
+
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put(OAuth2Utils.GRANT_TYPE,
+            GRANT_TYPE_PASSWORD);
+        parameters.put(OAuth2Utils.SCOPE,
+            String.join(" ",
+                client.getScope()));
+        parameters.put("username",
+            username);
+
+        TokenRequest tokenRequest = new TokenRequest(parameters,
+            CLIENT_ID,
+            client.getScope(),
+            GRANT_TYPE_PASSWORD);
+        OAuth2Request storedRequest = new DefaultOAuth2RequestFactory(clientDetailsService).createOAuth2Request(client,
+            tokenRequest);
+
+        UserDetails userDetails = securityUserService.loadUserByUsername(username);
+        UsernamePasswordAuthenticationToken userAuthentication = new UsernamePasswordAuthenticationToken(userDetails,
+            null,
+            userDetails.getAuthorities());
+        userAuthentication.setDetails(parameters);
+        // the token store keeps the principal, so drop the password hash as signing on through /login does
+        userAuthentication.eraseCredentials();
+
+        return tokenServices.createAccessToken(new OAuth2Authentication(storedRequest,
+            userAuthentication));
+    }
+}
@@ -0,0 +1,386 @@
+package com.lambdaschool.usermodel.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in memory index for finding the ids of documents whose text contains a given substring, ignoring case.
+ * <p>
+ * Each document is one or more pieces of text. Every run of three characters, a trigram, in the text maps to the
+ * ids of the documents containing it. A search intersects the lists for the trigrams of the substring, then checks each
+ * candidate actually contains the substring. Substrings shorter than three characters have no trigrams, so they are
+ * checked against every document.
+ * <p>
+ * Results come back in id order, a page at a time. The index is safe to use from many threads:
+ * searches run concurrently, changes one at a time.
+ */
+public class TrigramIndex
+{
+    /**
+     * The ids of the documents containing each trigram
+     */
+    private final Map<Long, SortedIds> postings = new HashMap<>();
+
+    /**
+     * The lowercase text of each document, used to check candidates
+     */
+    private final Map<Long, String[]> documents = new HashMap<>();
+
+    /**
+     * The ids of all documents
+     */
+    private final SortedIds allIds = new SortedIds();
+
+    /**
+     * Lets searches run concurrently while changes run one at a time
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Adds a document, or replaces it if a document with the same id is already indexed
+     *
+     * @param id    The id (long) of the document
+     * @param texts The text of the document. Nulls are ignored.
+     */
+    public void put(
+        long id,
+        Collection<String> texts)
+    {
+        String[] lowercase = texts.stream()
+            .filter(t -> t != null)
+            .map(String::toLowerCase)
+            .toArray(String[]::new);
+        Set<Long> trigrams = new HashSet<>();
+        for (String text : lowercase)
+        {
+            addTrigrams(text,
+                trigrams);
+        }
+
+        lock.writeLock()
+            .lock();
+        try
+        {
+            removeDocument(id);
+            documents.put(id,
+                lowercase);
+            allIds.add(id);
+            for (long trigram : trigrams)
+            {
+                postings.computeIfAbsent(trigram,
+                    t -> new SortedIds())
+                    .add(id);
+            }
+        } finally
+        {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * Removes a document. Does nothing if no document has the given id.
+     *
+     * @param id The id (long) of the document
+     */
+    public void remove(long id)
+    {
+        lock.writeLock()
+            .lock();
+        try
+        {
+            removeDocument(id);
+        } finally
+        {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * Removes all documents
+     */
+    public void clear()
+    {
+        lock.writeLock()
+            .lock();
+        try
+        {
+            postings.clear();
+            documents.clear();
+            allIds.clear();
+        } finally
+        {
+            lock.writeLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * The number of documents indexed
+     *
+     * @return the number (int) of documents
+     */
+    public int size()
+    {
+        lock.readLock()
+            .lock();
+        try
+        {
+            return documents.size();
+        } finally
+        {
+            lock.readLock()
+                .unlock();
+        }
+    }
+
+    /**
+     * Finds the ids of the documents containing the given substring, ignoring case, in id order
+     *
+     * @param substring The substring (String) to look for
+     * @param offset    The number (int) of matching ids to skip
+     * @param limit     The most ids (int) to return
+     * @return The ids of matching documents, in id order
+     */
+    public List<Long> search(
+        String substring,
+        int offset,
+        int limit)
+    {
+        String lowercase = substring.toLowerCase();
+        Set<Long> trigrams = new HashSet<>();
+        addTrigrams(lowercase,
+            trigrams);
+
+        List<Long> found = new ArrayList<>();
+        lock.readLock()
+            .lock();
+        try
+        {
+            SortedIds[] lists;
+            if (trigrams.isEmpty())
+            {
+                lists = new SortedIds[]{allIds};
+            } else
+            {
+                lists = new SortedIds[trigrams.size()];
+                int i = 0;
+                for (long trigram : trigrams)
+                {
+                    SortedIds list = postings.get(trigram);
+                    if (list == null)
+                    {
+                        return found;
+                    }
+                    lists[i++] = list;
+                }
+                // walk the shortest list, checking the others
+                Arrays.sort(lists,
+                    Comparator.comparingInt(SortedIds::size));
+            }
+
+            int skipped = 0;
+            SortedIds shortest = lists[0];
+            for (int i = 0; i < shortest.size() && found.size() < limit; i++)
+            {
+                long id = shortest.get(i);
+                if (inAll(lists,
+                    id) && contains(documents.get(id),
+                    lowercase))
+                {
+                    if (skipped < offset)
+                    {
+                        skipped++;
+                    } else
+                    {
+                        found.add(id);
+                    }
+                }
+            }
+        } finally
+        {
+            lock.readLock()
+                .unlock();
+        }
+        return found;
+    }
+
+    /**
+     * Removes a document. The caller must hold the write lock.
+     *
+     * @param id The id (long) of the document
+     */
+    private void removeDocument(long id)
+    {
+        String[] texts = documents.remove(id);
+        if (texts == null)
+        {
+            return;
+        }
+
+        allIds.remove(id);
+        Set<Long> trigrams = new HashSet<>();
+        for (String text : texts)
+        {
+            addTrigrams(text,
+                trigrams);
+        }
+        for (long trigram : trigrams)
+        {
+            SortedIds list = postings.get(trigram);
+            if (list != null)
+            {
+                list.remove(id);
+                if (list.size() == 0)
+                {
+                    postings.remove(trigram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells whether every list but the first contains the given id
+     *
+     * @param lists The lists, the first of which the id came from
+     * @param id    The id (long) to look for
+     * @return true if every list contains the id
+     */
+    private static boolean inAll(
+        SortedIds[] lists,
+        long id)
+    {
+        for (int i = 1; i < lists.length; i++)
+        {
+            if (!lists[i].contains(id))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells whether any of the texts contains the substring
+     *
+     * @param texts     The lowercase texts of a document
+     * @param substring The lowercase substring
+     * @return true if any text contains the substring
+     */
+    private static boolean contains(
+        String[] texts,
+        String substring)
+    {
+        for (String text : texts)
+        {
+            if (text.contains(substring))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the trigrams of the text to the given set. Each trigram is its three characters packed into a long.
+     *
+     * @param text     The lowercase text
+     * @param trigrams Where the trigrams are added
+     */
+    private static void addTrigrams(
+        String text,
+        Set<Long> trigrams)
+    {
+        for (int i = 0; i + 3 <= text.length(); i++)
+        {
+            trigrams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+    }
+
+    /**
+     * A sorted list of distinct ids kept in a plain array. Ids usually arrive in increasing order, so adding is usually
+     * an append.
+     */
+    private static class SortedIds
+    {
+        private long[] ids = new long[4];
+
+        private int size;
+
+        int size()
+        {
+            return size;
+        }
+
+        long get(int i)
+        {
+            return ids[i];
+        }
+
+        boolean contains(long id)
+        {
+            return Arrays.binarySearch(ids,
+                0,
+                size,
+                id) >= 0;
+        }
+
+        void add(long id)
+        {
+            int at = size == 0 || ids[size - 1] < id ? -(size + 1) : Arrays.binarySearch(ids,
+                0,
+                size,
+                id);
+            if (at >= 0)
+            {
+                return;
+            }
+            at = -(at + 1);
+            if (size == ids.length)
+            {
+                ids = Arrays.copyOf(ids,
+                    size * 2);
+            }
+            System.arraycopy(ids,
+                at,
+                ids,
+                at + 1,
+                size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        void remove(long id)
+        {
+            int at = Arrays.binarySearch(ids,
+                0,
+                size,
+                id);
+            if (at >= 0)
+            {
+                System.arraycopy(ids,
+                    at + 1,
+                    ids,
+                    at,
+                    size - at - 1);
+                size--;
+            }
+        }
+
+        void clear()
+        {
+            ids = new long[4];
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.lambdaschool.usermodel.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of the security user details used to authenticate users, keyed by lowercase username.
+ * Entries expire a set time after they are loaded. Anything that changes a user's name, password or roles
+ * must invalidate the affected entries.
+ * <p>
+ * The hit, miss and eviction counters are published to the metrics endpoint under the cache name userdetails,
+ * for example <a href="http://localhost:2019/actuator/metrics/cache.gets">http://localhost:2019/actuator/metrics/cache.gets</a>
+ */
+@Component
+public class UserDetailsCache
+{
+    /**
+     * The name under which the cache metrics are published
+     */
+    private static final String CACHE_NAME = "userdetails";
+
+    /**
+     * The cached user details keyed by lowercase username
+     */
+    private final Cache<String, SecurityUser> cache;
+
+    /**
+     * Creates the cache and registers its statistics with the metrics registry
+     *
+     * @param maximumSize   The most user details (long) kept at any one time
+     * @param expireAfter   How long (seconds) user details are kept after being loaded
+     * @param meterRegistry The registry where the cache metrics are published
+     */
+    public UserDetailsCache(
+        @Value("${usermodel.security.userdetails-cache.maximum-size:10000}")
+            long maximumSize,
+        @Value("${usermodel.security.userdetails-cache.expire-after-write-seconds:300}")
+            long expireAfter,
+        MeterRegistry meterRegistry)
+    {
+        cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(Duration.ofSeconds(expireAfter))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry,
+            cache,
+            CACHE_NAME);
+    }
+
+    /**
+     * Returns the user details for the given username, loading them on a miss.
+     * <p>
+     * Spring Security erases the password of the user details once authentication succeeds,
+     * so each caller gets its own copy rather than the cached instance. The copy keeps the authority bits,
+     * so the signed on user can still be checked for admin with a bit test.
+     *
+     * @param username The username (String) of the user details you seek
+     * @param loader   Loads the user details when they are not cached. Exceptions it throws are passed on and nothing is cached.
+     * @return A copy of the user details for the given username
+     */
+    public SecurityUser get(
+        String username,
+        Function<String, SecurityUser> loader)
+    {
+        return new SecurityUser(cache.get(username.toLowerCase(),
+            loader));
+    }
+
+    /**
+     * Removes the user details for the given username. If a transaction is in progress, the entry is removed
+     * again once the transaction completes so a login racing the transaction cannot cache the old values.
+     *
+     * @param username The username (String) whose user details are no longer valid
+     */
+    public void invalidate(String username)
+    {
+        String key = username.toLowerCase();
+        cache.invalidate(key);
+        afterTransaction(() -> cache.invalidate(key));
+    }
+
+    /**
+     * Removes all user details, for example when a role changes. If a transaction is in progress,
+     * the cache is cleared again once the transaction completes.
+     */
+    public void invalidateAll()
+    {
+        cache.invalidateAll();
+        afterTransaction(cache::invalidateAll);
+    }
+
+    /**
+     * Runs the given action once the current transaction completes, if there is one
+     *
+     * @param action what to run
+     */
+    private void afterTransaction(Runnable action)
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+            {
+                @Override
+                public void afterCompletion(int status)
+                {
+                    action.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.UserExportColumn;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+
+/**
+ * The service that exports all users
+ * <p>
+ * Users are streamed straight from the database to the output in primary key order, so an export of any size
+ * holds only one user in memory. Email addresses and roles are only read when their columns are asked for.
+ */
+public interface UserExportService
+{
+    /**
+     * Writes every user as a line of newline delimited JSON, holding only the given columns.
+     * useremails and roles are lists of email addresses and role names.
+     *
+     * @param columns The columns to export
+     * @param out     Where the NDJSON is written, as UTF-8
+     * @throws IOException if the output cannot be written
+     */
+    void exportNdjson(
+        Set<UserExportColumn> columns,
+        OutputStream out) throws
+                          IOException;
+
+    /**
+     * Writes every user as a row of CSV, holding only the given columns. The first line names the columns.
+     * useremails and roles hold their email addresses or role names separated by semicolons,
+     * the same layout POST /users/bulk reads.
+     *
+     * @param columns The columns to export
+     * @param out     Where the CSV is written, as UTF-8
+     * @throws IOException if the output cannot be written
+     */
+    void exportCsv(
+        Set<UserExportColumn> columns,
+        OutputStream out) throws
+                          IOException;
+}
@@ -0,0 +1,403 @@
+package com.lambdaschool.usermodel.services;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lambdaschool.usermodel.models.UserExportColumn;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Implements the UserExportService Interface
+ * <p>
+ * The export reads plain JDBC result sets rather than entities, so nothing builds up in the persistence context.
+ * Users, their email addresses and their roles are each read by a forward only cursor in user id order,
+ * and the three are merged as they go, the way a merge join would. The cursors fetch
+ * usermodel.users.export.fetch-size rows at a time, inside one read only transaction.
+ */
+@Transactional(readOnly = true)
+@Service(value = "userExportService")
+public class UserExportServiceImpl
+    implements UserExportService
+{
+    /**
+     * Runs the export queries on the connection of the current transaction
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Writes the rows of NDJSON
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * The number of rows each cursor fetches from the database at a time
+     */
+    @Value("${usermodel.users.export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Override
+    public void exportNdjson(
+        Set<UserExportColumn> columns,
+        OutputStream out) throws
+                          IOException
+    {
+        try (JsonGenerator generator = objectMapper.getFactory()
+            .createGenerator(out,
+                JsonEncoding.UTF8))
+        {
+            // each object ends its own line, so no separator is written between them
+            generator.setRootValueSeparator(null);
+            exportRows(columns,
+                row ->
+                {
+                    generator.writeStartObject();
+                    for (UserExportColumn column : columns)
+                    {
+                        generator.writeFieldName(column.getFieldName());
+                        switch (column)
+                        {
+                            case USERID:
+                                generator.writeNumber(row.userid);
+                                break;
+                            case USERNAME:
+                                generator.writeString(row.username);
+                                break;
+                            case PRIMARYEMAIL:
+                                generator.writeString(row.primaryemail);
+                                break;
+                            case USEREMAILS:
+                                writeArray(generator,
+                                    row.useremails);
+                                break;
+                            case ROLES:
+                                writeArray(generator,
+                                    row.roles);
+                                break;
+                        }
+                    }
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                });
+        }
+    }
+
+    @Override
+    public void exportCsv(
+        Set<UserExportColumn> columns,
+        OutputStream out) throws
+                          IOException
+    {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out,
+            StandardCharsets.UTF_8)))
+        {
+            List<String> header = new ArrayList<>();
+            for (UserExportColumn column : columns)
+            {
+                header.add(column.getFieldName());
+            }
+            writeCsvLine(writer,
+                header);
+
+            exportRows(columns,
+                row ->
+                {
+                    List<String> fields = new ArrayList<>();
+                    for (UserExportColumn column : columns)
+                    {
+                        switch (column)
+                        {
+                            case USERID:
+                                fields.add(Long.toString(row.userid));
+                                break;
+                            case USERNAME:
+                                fields.add(row.username);
+                                break;
+                            case PRIMARYEMAIL:
+                                fields.add(row.primaryemail);
+                                break;
+                            case USEREMAILS:
+                                fields.add(String.join(";",
+                                    row.useremails));
+                                break;
+                            case ROLES:
+                                fields.add(String.join(";",
+                                    row.roles));
+                                break;
+                        }
+                    }
+                    writeCsvLine(writer,
+                        fields);
+                });
+        }
+    }
+
+    /**
+     * Reads every user, with only the given columns, and passes each one to the row writer in user id order
+     *
+     * @param columns   The columns to read
+     * @param rowWriter Writes each user out
+     * @throws IOException if the row writer cannot write
+     */
+    private void exportRows(
+        Set<UserExportColumn> columns,
+        RowWriter rowWriter) throws
+                             IOException
+    {
+        StringBuilder select = new StringBuilder("SELECT userid");
+        if (columns.contains(UserExportColumn.USERNAME))
+        {
+            select.append(", username");
+        }
+        if (columns.contains(UserExportColumn.PRIMARYEMAIL))
+        {
+            select.append(", primaryemail");
+        }
+        select.append(" FROM users ORDER BY userid");
+
+        try
+        {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection ->
+            {
+                try (PreparedStatement users = cursor(connection,
+                    select.toString());
+                     ChildCursor useremails = columns.contains(UserExportColumn.USEREMAILS) ? new ChildCursor(cursor(connection,
+                         "SELECT userid, useremail FROM useremails ORDER BY userid, useremailid")) : null;
+                     ChildCursor roles = columns.contains(UserExportColumn.ROLES) ? new ChildCursor(cursor(connection,
+                         "SELECT ur.userid, r.name FROM userroles ur JOIN roles r ON r.roleid = ur.roleid ORDER BY ur.userid, r.name")) : null;
+                     ResultSet rs = users.executeQuery())
+                {
+                    ExportedUser row = new ExportedUser();
+                    while (rs.next())
+                    {
+                        row.userid = rs.getLong("userid");
+                        row.username = columns.contains(UserExportColumn.USERNAME) ? rs.getString("username") : null;
+                        row.primaryemail = columns.contains(UserExportColumn.PRIMARYEMAIL) ? rs.getString("primaryemail") : null;
+                        row.useremails = (useremails == null) ? Collections.emptyList() : useremails.valuesFor(row.userid);
+                        row.roles = (roles == null) ? Collections.emptyList() : roles.valuesFor(row.userid);
+                        try
+                        {
+                            rowWriter.write(row);
+                        } catch (IOException e)
+                        {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Prepares a forward only, read only query that fetches fetchSize rows at a time
+     *
+     * @param connection The connection of the current transaction
+     * @param sql        The query (String)
+     * @return The prepared query
+     * @throws SQLException if the query cannot be prepared
+     */
+    private PreparedStatement cursor(
+        Connection connection,
+        String sql) throws
+                    SQLException
+    {
+        PreparedStatement statement = connection.prepareStatement(sql,
+            ResultSet.TYPE_FORWARD_ONLY,
+            ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(fetchSize);
+        return statement;
+    }
+
+    /**
+     * Writes a list of strings as a JSON array
+     *
+     * @param generator Where the array is written
+     * @param values    The strings to write
+     * @throws IOException if the array cannot be written
+     */
+    private static void writeArray(
+        JsonGenerator generator,
+        List<String> values) throws
+                             IOException
+    {
+        generator.writeStartArray();
+        for (String value : values)
+        {
+            generator.writeString(value);
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Writes one line of CSV. Fields holding a comma, a double quote or a line break are quoted,
+     * with double quotes inside them written twice.
+     *
+     * @param writer Where the line is written
+     * @param fields The fields of the line. Nulls are written as empty fields.
+     * @throws IOException if the line cannot be written
+     */
+    private static void writeCsvLine(
+        Writer writer,
+        List<String> fields) throws
+                             IOException
+    {
+        for (int i = 0; i < fields.size(); i++)
+        {
+            if (i > 0)
+            {
+                writer.write(',');
+            }
+            String field = fields.get(i);
+            if (field == null)
+            {
+                continue;
+            }
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0)
+            {
+                writer.write('"');
+                writer.write(field.replace("\"",
+                    "\"\""));
+                writer.write('"');
+            } else
+            {
+                writer.write(field);
+            }
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Writes out one user
+     */
+    @FunctionalInterface
+    private interface RowWriter
+    {
+        void write(ExportedUser row) throws
+                                     IOException;
+    }
+
+    /**
+     * The user being written. One instance is reused for every user of an export.
+     */
+    private static class ExportedUser
+    {
+        long userid;
+
+        String username;
+
+        String primaryemail;
+
+        List<String> useremails;
+
+        List<String> roles;
+    }
+
+    /**
+     * A cursor over rows of user id and value, in user id order, read alongside the cursor over users
+     */
+    private static class ChildCursor
+        implements AutoCloseable
+    {
+        private final PreparedStatement statement;
+
+        private final ResultSet rs;
+
+        /**
+         * Whether rs is on a row not yet handed out
+         */
+        private boolean pending;
+
+        /**
+         * Runs the query and moves to its first row. The cursor owns the statement from here on,
+         * so the statement is closed should this fail.
+         *
+         * @param statement The query, as prepared by cursor
+         * @throws SQLException if the query cannot be run
+         */
+        ChildCursor(PreparedStatement statement) throws
+                                                  SQLException
+        {
+            this.statement = statement;
+            try
+            {
+                rs = statement.executeQuery();
+                pending = rs.next();
+            } catch (SQLException | RuntimeException e)
+            {
+                // closing the statement closes its result set too
+                try
+                {
+                    statement.close();
+                } catch (SQLException closeFailed)
+                {
+                    e.addSuppressed(closeFailed);
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * The values of the given user. Users must be asked for in increasing user id order.
+         *
+         * @param userid The primary key (long) of the user
+         * @return The values of the user, empty if it has none
+         * @throws SQLException if the rows cannot be read
+         */
+        List<String> valuesFor(long userid) throws
+                                            SQLException
+        {
+            // skip rows of users no longer there, for example deleted since the export began
+            while (pending && rs.getLong(1) < userid)
+            {
+                pending = rs.next();
+            }
+
+            List<String> values = new ArrayList<>();
+            while (pending && rs.getLong(1) == userid)
+            {
+                values.add(rs.getString(2));
+                pending = rs.next();
+            }
+            return values;
+        }
+
+        @Override
+        public void close() throws
+                            SQLException
+        {
+            try
+            {
+                rs.close();
+            } finally
+            {
+                statement.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.UserImportResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * The service that adds users in bulk
+ * <p>
+ * Rows are read and written a chunk at a time, so an import of any size holds only one chunk in memory.
+ * Each chunk is saved in a transaction of its own. A row that cannot be imported is reported by its line number
+ * and the rest of the import carries on.
+ */
+public interface UserImportService
+{
+    /**
+     * Creates a user for each line of newline delimited JSON. Each line is an object with the fields
+     * username, password, primaryemail and, optionally, useremails and roles, lists of email addresses and role names.
+     * Users without roles get the role USER.
+     *
+     * @param reader The NDJSON to read
+     * @return The number of users created and the rows that could not be imported
+     * @throws IOException if the NDJSON cannot be read
+     */
+    UserImportResult importNdjson(BufferedReader reader) throws
+                                                         IOException;
+
+    /**
+     * Creates a user for each row of CSV. The first line names the columns:
+     * username, password and primaryemail are required, useremails and roles are optional
+     * and hold their email addresses or role names separated by semicolons.
+     * Fields may be quoted but may not span lines. Users without roles get the role USER.
+     *
+     * @param reader The CSV to read
+     * @return The number of users created and the rows that could not be imported
+     * @throws IOException if the CSV cannot be read
+     */
+    UserImportResult importCsv(BufferedReader reader) throws
+                                                      IOException;
+}
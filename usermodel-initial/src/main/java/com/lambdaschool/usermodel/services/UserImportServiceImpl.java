@@ -0,0 +1,785 @@
+package com.lambdaschool.usermodel.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.lambdaschool.usermodel.config.BoundedPasswordEncoder;
+import com.lambdaschool.usermodel.exceptions.ResourceNotFoundException;
+import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.models.UserImportError;
+import com.lambdaschool.usermodel.models.UserImportResult;
+import com.lambdaschool.usermodel.models.UserImportRow;
+import com.lambdaschool.usermodel.models.UserRoles;
+import com.lambdaschool.usermodel.models.Useremail;
+import com.lambdaschool.usermodel.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Implements the UserImportService Interface
+ * <p>
+ * A chunk is checked with one query for the usernames and one for the primary emails already taken, then all its users
+ * are inserted in a single transaction using JDBC batches. Should the chunk still fail, for example because another
+ * request took a username in the meantime, its users are saved again one at a time to find the rows at fault.
+ * <p>
+ * Passwords are hashed on a pool of threads while earlier chunks are being saved, see importRows.
+ */
+@Service(value = "userImportService")
+public class UserImportServiceImpl
+    implements UserImportService
+{
+    /**
+     * The role given to users imported without roles
+     */
+    private static final String DEFAULT_ROLE = "USER";
+
+    /**
+     * Connects this service to the User table
+     */
+    @Autowired
+    private UserRepository userrepos;
+
+    /**
+     * Connects this service to the Role table
+     */
+    @Autowired
+    private RoleService roleService;
+
+    /**
+     * The roles that exist, so role names can be resolved without queries
+     */
+    @Autowired
+    private RoleCatalog roleCatalog;
+
+    /**
+     * The users imported are added to the search indexes
+     */
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    /**
+     * The application's password encoder
+     */
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    /**
+     * Checks each row against the constraints of UserImportRow
+     */
+    @Autowired
+    private Validator validator;
+
+    /**
+     * Reads the rows of NDJSON
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Used to give each chunk a transaction of its own
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Used to insert the users of a chunk and then let them go
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * The number of rows saved together in one transaction
+     */
+    @Value("${usermodel.users.import.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * The most row errors reported in detail. Rows failing beyond this are only counted.
+     */
+    @Value("${usermodel.users.import.max-errors:1000}")
+    private int maxErrors;
+
+    /**
+     * The number of passwords hashed at once. 0 means one per processor.
+     */
+    @Value("${usermodel.users.import.hash-threads:0}")
+    private int hashThreads;
+
+    /**
+     * The most rows of an import read ahead of the rows being saved, so an import holds at most this many rows in memory
+     * however large it is. Should be at least the chunk size.
+     */
+    @Value("${usermodel.users.import.in-flight:2000}")
+    private int inFlight;
+
+    /**
+     * Hashes the passwords of the users imported. Imports hash directly with the encoder doing the actual work rather than
+     * going through the application's bounded password encoder, whose queue is sized for sign ups and sign ons.
+     */
+    private PasswordEncoder passwordHasher;
+
+    /**
+     * The threads hashing passwords, shared by all imports
+     */
+    private ExecutorService hasher;
+
+    /**
+     * Starts the threads hashing passwords
+     */
+    @PostConstruct
+    public void startHashing()
+    {
+        int threads = hashThreads > 0 ? hashThreads : Runtime.getRuntime()
+            .availableProcessors();
+        hasher = Executors.newFixedThreadPool(threads,
+            new CustomizableThreadFactory("user-import-hash-"));
+        passwordHasher = (passwordEncoder instanceof BoundedPasswordEncoder) ? ((BoundedPasswordEncoder) passwordEncoder).getDelegate() : passwordEncoder;
+    }
+
+    /**
+     * Stops the threads hashing passwords. Called by Spring when the application shuts down.
+     */
+    @PreDestroy
+    public void stopHashing()
+    {
+        hasher.shutdownNow();
+    }
+
+    @Override
+    public UserImportResult importNdjson(BufferedReader reader) throws
+                                                                IOException
+    {
+        ObjectReader rowReader = objectMapper.readerFor(UserImportRow.class);
+        return importRows(reader,
+            0,
+            rowReader::readValue);
+    }
+
+    @Override
+    public UserImportResult importCsv(BufferedReader reader) throws
+                                                             IOException
+    {
+        long headerLine = 0;
+        String header;
+        do
+        {
+            header = reader.readLine();
+            headerLine++;
+        } while (header != null && header.trim()
+            .isEmpty());
+
+        if (header == null)
+        {
+            return new UserImportResult();
+        }
+
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = splitCsv(header);
+        for (int i = 0; i < names.size(); i++)
+        {
+            columns.put(names.get(i)
+                    .trim()
+                    .toLowerCase(),
+                i);
+        }
+        if (!columns.keySet()
+            .containsAll(Arrays.asList("username",
+                "password",
+                "primaryemail")))
+        {
+            UserImportResult result = new UserImportResult();
+            addError(result,
+                headerLine,
+                "The first line must name the columns username, password and primaryemail");
+            return result;
+        }
+
+        return importRows(reader,
+            headerLine,
+            line ->
+            {
+                List<String> fields = splitCsv(line);
+                UserImportRow row = new UserImportRow();
+                row.setUsername(field(fields,
+                    columns.get("username")));
+                row.setPassword(field(fields,
+                    columns.get("password")));
+                row.setPrimaryemail(field(fields,
+                    columns.get("primaryemail")));
+                row.setUseremails(listField(fields,
+                    columns.get("useremails")));
+                row.setRoles(listField(fields,
+                    columns.get("roles")));
+                return row;
+            });
+    }
+
+    /**
+     * Reads the remaining lines, one row each, and imports them a chunk at a time.
+     * <p>
+     * The import is a pipeline. This thread reads and checks a chunk of rows, hands their passwords to the hashing
+     * threads and moves on to the next chunk. Before handing over a chunk, it saves the oldest chunks, waiting for their
+     * hashes if need be, until no more than usermodel.users.import.in-flight rows would be waiting to be saved.
+     * Chunks are saved in the order they were read.
+     *
+     * @param reader    The lines to read
+     * @param linesRead The number (long) of lines already read, so row errors give the right line number
+     * @param parser    Turns a line into a row
+     * @return The number of users created and the rows that could not be imported
+     * @throws IOException if the lines cannot be read
+     */
+    private UserImportResult importRows(
+        BufferedReader reader,
+        long linesRead,
+        RowParser parser) throws
+                          IOException
+    {
+        UserImportResult result = new UserImportResult();
+        Import progress = new Import();
+        List<NumberedRow> chunk = new ArrayList<>(chunkSize);
+        Deque<List<NewUser>> hashing = new ArrayDeque<>();
+        int rowsHashing = 0;
+
+        try
+        {
+            long lineNumber = linesRead;
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                lineNumber++;
+                if (line.trim()
+                    .isEmpty())
+                {
+                    continue;
+                }
+
+                try
+                {
+                    chunk.add(new NumberedRow(lineNumber,
+                        parser.parse(line)));
+                } catch (JsonProcessingException e)
+                {
+                    addError(result,
+                        lineNumber,
+                        "Could not read the row: " + e.getOriginalMessage());
+                }
+
+                if (chunk.size() == chunkSize)
+                {
+                    rowsHashing = makeRoom(hashing,
+                        rowsHashing,
+                        chunk.size(),
+                        result);
+                    List<NewUser> newUsers = checkChunk(chunk,
+                        progress,
+                        result);
+                    chunk.clear();
+                    hashing.addLast(newUsers);
+                    rowsHashing += newUsers.size();
+                }
+            }
+
+            if (!chunk.isEmpty())
+            {
+                makeRoom(hashing,
+                    rowsHashing,
+                    chunk.size(),
+                    result);
+                hashing.addLast(checkChunk(chunk,
+                    progress,
+                    result));
+            }
+            while (!hashing.isEmpty())
+            {
+                saveChunk(hashing.removeFirst(),
+                    result);
+            }
+        } finally
+        {
+            // if the import fails part way, do not leave hashing the passwords of rows that will never be saved
+            for (List<NewUser> newUsers : hashing)
+            {
+                newUsers.forEach(newUser -> newUser.password.cancel(false));
+            }
+        }
+
+        // rows that could not be read are reported before the rest of their chunk
+        result.getErrors()
+            .sort(Comparator.comparingLong(UserImportError::getLine));
+        return result;
+    }
+
+    /**
+     * Saves the oldest chunks until the given number of rows can start hashing
+     * without more than usermodel.users.import.in-flight rows waiting to be saved
+     *
+     * @param hashing     The chunks whose passwords are being hashed, oldest first
+     * @param rowsHashing The number (int) of rows in those chunks
+     * @param rows        The number (int) of rows about to start hashing
+     * @param result      Where the outcome of the chunks saved is recorded
+     * @return The number (int) of rows still waiting to be saved
+     */
+    private int makeRoom(
+        Deque<List<NewUser>> hashing,
+        int rowsHashing,
+        int rows,
+        UserImportResult result)
+    {
+        while (!hashing.isEmpty() && rowsHashing + rows > inFlight)
+        {
+            List<NewUser> oldest = hashing.removeFirst();
+            rowsHashing -= oldest.size();
+            saveChunk(oldest,
+                result);
+        }
+        return rowsHashing;
+    }
+
+    /**
+     * Checks a chunk of rows and starts hashing the passwords of the rows that pass
+     *
+     * @param chunk    The rows to check
+     * @param progress What earlier chunks of this import have taken
+     * @param result   Where rows that do not pass are recorded
+     * @return The users to save once their passwords are hashed, in the order of their rows
+     */
+    private List<NewUser> checkChunk(
+        List<NumberedRow> chunk,
+        Import progress,
+        UserImportResult result)
+    {
+        List<String> usernames = new ArrayList<>();
+        List<String> primaryemails = new ArrayList<>();
+        for (NumberedRow numbered : chunk)
+        {
+            if (numbered.row.getUsername() != null)
+            {
+                usernames.add(numbered.row.getUsername()
+                    .toLowerCase());
+            }
+            if (numbered.row.getPrimaryemail() != null)
+            {
+                primaryemails.add(numbered.row.getPrimaryemail()
+                    .toLowerCase());
+            }
+        }
+        Set<String> takenUsernames = new HashSet<>(userrepos.findUsernamesIn(usernames));
+        Set<String> takenPrimaryemails = new HashSet<>(userrepos.findPrimaryemailsIn(primaryemails));
+
+        List<NewUser> newUsers = new ArrayList<>();
+        for (NumberedRow numbered : chunk)
+        {
+            UserImportRow row = numbered.row;
+            Set<ConstraintViolation<UserImportRow>> violations = validator.validate(row);
+            if (!violations.isEmpty())
+            {
+                addError(result,
+                    numbered.line,
+                    violations.stream()
+                        .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", ")));
+                continue;
+            }
+
+            String username = row.getUsername()
+                .toLowerCase();
+            String primaryemail = row.getPrimaryemail()
+                .toLowerCase();
+            if (takenUsernames.contains(username) || !progress.usernames.add(username))
+            {
+                addError(result,
+                    numbered.line,
+                    "Username " + username + " is already taken");
+                continue;
+            }
+            if (takenPrimaryemails.contains(primaryemail) || !progress.primaryemails.add(primaryemail))
+            {
+                progress.usernames.remove(username);
+                addError(result,
+                    numbered.line,
+                    "Primary email " + primaryemail + " is already taken");
+                continue;
+            }
+
+            List<Long> roleids = new ArrayList<>();
+            try
+            {
+                for (String roleName : row.getRoles()
+                    .isEmpty() ? Collections.singletonList(DEFAULT_ROLE) : row.getRoles())
+                {
+                    roleids.add(progress.roleids.computeIfAbsent(roleName.toUpperCase(),
+                        this::findRoleid));
+                }
+            } catch (ResourceNotFoundException e)
+            {
+                progress.usernames.remove(username);
+                progress.primaryemails.remove(primaryemail);
+                addError(result,
+                    numbered.line,
+                    e.getMessage());
+                continue;
+            }
+
+            String rawPassword = row.getPassword();
+            newUsers.add(new NewUser(numbered.line,
+                username,
+                CompletableFuture.supplyAsync(() -> passwordHasher.encode(rawPassword),
+                    hasher),
+                primaryemail,
+                row.getUseremails(),
+                roleids));
+        }
+        return newUsers;
+    }
+
+    /**
+     * Waits for the passwords of a chunk to be hashed, then saves its users
+     *
+     * @param newUsers The users to save
+     * @param result   Where the outcome is recorded
+     */
+    private void saveChunk(
+        List<NewUser> newUsers,
+        UserImportResult result)
+    {
+        List<NewUser> hashed = new ArrayList<>();
+        for (NewUser newUser : newUsers)
+        {
+            try
+            {
+                newUser.password.join();
+                hashed.add(newUser);
+            } catch (CompletionException e)
+            {
+                addError(result,
+                    newUser.line,
+                    "Could not hash the password: " + e.getCause()
+                        .getMessage());
+            } catch (CancellationException e)
+            {
+                addError(result,
+                    newUser.line,
+                    "Could not hash the password: hashing was cancelled");
+            }
+        }
+
+        if (hashed.isEmpty())
+        {
+            return;
+        }
+
+        try
+        {
+            save(hashed);
+            result.setImported(result.getImported() + hashed.size());
+        } catch (RuntimeException chunkFailed)
+        {
+            for (NewUser newUser : hashed)
+            {
+                try
+                {
+                    save(Collections.singletonList(newUser));
+                    result.setImported(result.getImported() + 1);
+                } catch (RuntimeException e)
+                {
+                    addError(result,
+                        newUser.line,
+                        "Could not save the user: " + NestedExceptionUtils.getMostSpecificCause(e)
+                            .getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts the given users in a transaction of their own, then lets them go from the persistence context
+     *
+     * @param newUsers The users to insert
+     */
+    private void save(List<NewUser> newUsers)
+    {
+        TransactionTemplate newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        newTransaction.executeWithoutResult(status ->
+        {
+            for (NewUser newUser : newUsers)
+            {
+                User user = new User();
+                user.setUsername(newUser.username);
+                user.setPasswordNoEncrypt(newUser.password.join());
+                user.setPrimaryemail(newUser.primaryemail);
+                for (String useremail : newUser.useremails)
+                {
+                    user.getUseremails()
+                        .add(new Useremail(user,
+                            useremail));
+                }
+                for (long roleid : newUser.roleids)
+                {
+                    user.getRoles()
+                        .add(new UserRoles(user,
+                            entityManager.getReference(Role.class,
+                                roleid)));
+                }
+                entityManager.persist(user);
+                userSearchIndex.index(user);
+            }
+            entityManager.flush();
+            entityManager.clear();
+        });
+    }
+
+    /**
+     * Finds the primary key of the role with the given name
+     *
+     * @param name The uppercase name (String) of the role
+     * @return The primary key (Long) of the role
+     * @throws ResourceNotFoundException if no role has that name
+     */
+    private Long findRoleid(String name)
+    {
+        Long roleid = roleCatalog.findRoleid(name);
+        if (roleid == null)
+        {
+            try
+            {
+                roleid = roleService.findByName(name)
+                    .getRoleid();
+            } catch (ResourceNotFoundException e)
+            {
+                throw ResourceNotFoundException.withoutStackTrace("Role %s not found!",
+                    name);
+            }
+        }
+        return roleid;
+    }
+
+    /**
+     * Records a row that could not be imported. Only the first errors are kept in detail.
+     *
+     * @param result  Where the error is recorded
+     * @param line    The line number (long) of the row
+     * @param message Why the row could not be imported (String)
+     */
+    private void addError(
+        UserImportResult result,
+        long line,
+        String message)
+    {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors()
+            .size() < maxErrors)
+        {
+            result.getErrors()
+                .add(new UserImportError(line,
+                    message));
+        }
+    }
+
+    /**
+     * Splits a line of CSV into its fields. Fields may be quoted with double quotes,
+     * and a double quote inside a quoted field is written twice.
+     *
+     * @param line The line (String) of CSV
+     * @return The fields of the line
+     */
+    private static List<String> splitCsv(String line)
+    {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++)
+        {
+            char c = line.charAt(i);
+            if (quoted)
+            {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"')
+                {
+                    field.append('"');
+                    i++;
+                } else if (c == '"')
+                {
+                    quoted = false;
+                } else
+                {
+                    field.append(c);
+                }
+            } else if (c == '"')
+            {
+                quoted = true;
+            } else if (c == ',')
+            {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else
+            {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * The field in the given column, or null if the row is too short or the field is empty
+     *
+     * @param fields The fields of the row
+     * @param column The column (Integer) of the field
+     * @return The trimmed field
+     */
+    private static String field(
+        List<String> fields,
+        Integer column)
+    {
+        if (column == null || column >= fields.size())
+        {
+            return null;
+        }
+        String value = fields.get(column)
+            .trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * The semicolon separated values of the field in the given column
+     *
+     * @param fields The fields of the row
+     * @param column The column (Integer) of the field, null if the CSV does not have this column
+     * @return The values, empty if there are none
+     */
+    private static List<String> listField(
+        List<String> fields,
+        Integer column)
+    {
+        List<String> values = new ArrayList<>();
+        String value = field(fields,
+            column);
+        if (value != null)
+        {
+            for (String v : value.split(";"))
+            {
+                if (!v.trim()
+                    .isEmpty())
+                {
+                    values.add(v.trim());
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Turns a line into a row
+     */
+    @FunctionalInterface
+    private interface RowParser
+    {
+        UserImportRow parse(String line) throws
+                                         IOException;
+    }
+
+    /**
+     * A row and the line it was read from
+     */
+    private static class NumberedRow
+    {
+        final long line;
+
+        final UserImportRow row;
+
+        NumberedRow(
+            long line,
+            UserImportRow row)
+        {
+            this.line = line;
+            this.row = row;
+        }
+    }
+
+    /**
+     * What the chunks of one import have taken so far, so two rows cannot claim the same username or primary email
+     */
+    private static class Import
+    {
+        final Set<String> usernames = new HashSet<>();
+
+        final Set<String> primaryemails = new HashSet<>();
+
+        /**
+         * The primary key of each role named so far, by uppercase name
+         */
+        final Map<String, Long> roleids = new HashMap<>();
+    }
+
+    /**
+     * A user that passed all checks, waiting for its password to be hashed and to be saved
+     */
+    private static class NewUser
+    {
+        final long line;
+
+        final String username;
+
+        /**
+         * The hash of the password, once the hashing threads get to it
+         */
+        final CompletableFuture<String> password;
+
+        final String primaryemail;
+
+        final List<String> useremails;
+
+        final List<Long> roleids;
+
+        NewUser(
+            long line,
+            String username,
+            CompletableFuture<String> password,
+            String primaryemail,
+            List<String> useremails,
+            List<Long> roleids)
+        {
+            this.line = line;
+            this.username = username;
+            this.password = password;
+            this.primaryemail = primaryemail;
+            this.useremails = useremails;
+            this.roleids = roleids;
+        }
+    }
+}
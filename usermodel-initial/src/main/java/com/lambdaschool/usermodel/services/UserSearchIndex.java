@@ -0,0 +1,353 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.models.Useremail;
+import com.lambdaschool.usermodel.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In memory trigram indexes over the usernames and the email addresses of all users, so substring searches
+ * do not scan the users table.
+ * <p>
+ * The indexes are built from the database once the application is ready, then kept up to date as users change.
+ * Changes made in a transaction are applied once the transaction commits. Until the first build finishes,
+ * isReady() is false and searches should go to the database instead.
+ * <p>
+ * Requests are already being served while the indexes are built, so a user can change after its page was read
+ * and before that page is indexed, which would put back what the user was before. Users changed during a build
+ * are therefore read again once all pages are indexed.
+ */
+@Component
+public class UserSearchIndex
+{
+    /**
+     * Connects this index to the User table
+     */
+    @Autowired
+    private UserRepository userrepos;
+
+    /**
+     * Used to read a user in a transaction of its own, after the transaction that changed it has committed
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * The number of users read from the database at a time while building the indexes
+     */
+    @Value("${usermodel.users.page-size:500}")
+    private int pageSize;
+
+    /**
+     * The username of each user, by user id
+     */
+    private final TrigramIndex usernames = new TrigramIndex();
+
+    /**
+     * The primary email and other emails of each user, by user id
+     */
+    private final TrigramIndex emails = new TrigramIndex();
+
+    /**
+     * Whether the indexes have been built
+     */
+    private volatile boolean ready;
+
+    /**
+     * Whether the indexes are being built
+     */
+    private volatile boolean rebuilding;
+
+    /**
+     * Whether all users were removed while the indexes were being built
+     */
+    private volatile boolean clearedWhileRebuilding;
+
+    /**
+     * The ids of the users changed while the indexes were being built, not yet read again
+     */
+    private final Set<Long> changedWhileRebuilding = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Builds the indexes from the database, a page of users at a time, then reads again the users changed meanwhile
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild()
+    {
+        ready = false;
+        rebuilding = true;
+        try
+        {
+            do
+            {
+                clearedWhileRebuilding = false;
+                changedWhileRebuilding.clear();
+                usernames.clear();
+                emails.clear();
+
+                long cursor = 0;
+                List<User> page;
+                do
+                {
+                    page = userrepos.findByUseridGreaterThanOrderByUseridAsc(cursor,
+                        PageRequest.of(0,
+                            pageSize));
+                    if (!page.isEmpty())
+                    {
+                        List<Long> userids = page.stream()
+                            .map(User::getUserid)
+                            .collect(Collectors.toList());
+                        for (User user : userrepos.findWithUseremailsByUseridIn(userids))
+                        {
+                            put(user.getUserid(),
+                                user.getUsername(),
+                                emailsOf(user));
+                        }
+                        cursor = userids.get(userids.size() - 1);
+                    }
+                } while (page.size() == pageSize);
+
+                // a change is recorded before it is applied, so a user changed again while being read here is read once more
+                while (!changedWhileRebuilding.isEmpty() && !clearedWhileRebuilding)
+                {
+                    Iterator<Long> changed = changedWhileRebuilding.iterator();
+                    while (changed.hasNext())
+                    {
+                        long userid = changed.next();
+                        changed.remove();
+                        refresh(userid);
+                    }
+                }
+            } while (clearedWhileRebuilding);
+        } finally
+        {
+            rebuilding = false;
+        }
+
+        ready = true;
+    }
+
+    /**
+     * Tells whether the indexes have been built and can be searched
+     *
+     * @return true if the indexes can be searched
+     */
+    public boolean isReady()
+    {
+        return ready;
+    }
+
+    /**
+     * Finds the ids of users whose username contains the given substring, ignoring case, in user id order
+     *
+     * @param substring The substring (String) of the username
+     * @param offset    The number (int) of matching users to skip
+     * @param limit     The most user ids (int) to return
+     * @return The matching user ids
+     */
+    public List<Long> findUsernamesContaining(
+        String substring,
+        int offset,
+        int limit)
+    {
+        return usernames.search(substring,
+            offset,
+            limit);
+    }
+
+    /**
+     * Finds the ids of users with an email, primary or not, containing the given substring, ignoring case, in user id order
+     *
+     * @param substring The substring (String) of the email
+     * @param offset    The number (int) of matching users to skip
+     * @param limit     The most user ids (int) to return
+     * @return The matching user ids
+     */
+    public List<Long> findEmailsContaining(
+        String substring,
+        int offset,
+        int limit)
+    {
+        return emails.search(substring,
+            offset,
+            limit);
+    }
+
+    /**
+     * Indexes the user as it is now, replacing what was indexed for it before.
+     * The user's username and emails are read straight away but only indexed once the current transaction commits.
+     *
+     * @param user The user, with its useremails loaded
+     */
+    public void index(User user)
+    {
+        long userid = user.getUserid();
+        String username = user.getUsername();
+        List<String> userEmails = emailsOf(user);
+        afterCommit(() -> changed(userid,
+            () -> put(userid,
+                username,
+                userEmails)));
+    }
+
+    /**
+     * Indexes the user as it is in the database once the current transaction commits.
+     * Use this when the user's useremails may not reflect a change, for example when a useremail is saved on its own.
+     *
+     * @param userid The primary key (long) of the user
+     */
+    public void reindex(long userid)
+    {
+        afterCommit(() -> changed(userid,
+            () -> refresh(userid)));
+    }
+
+    /**
+     * Removes the user from the indexes once the current transaction commits
+     *
+     * @param userid The primary key (long) of the user
+     */
+    public void remove(long userid)
+    {
+        afterCommit(() -> changed(userid,
+            () ->
+            {
+                usernames.remove(userid);
+                emails.remove(userid);
+            }));
+    }
+
+    /**
+     * Removes all users from the indexes once the current transaction commits
+     */
+    public void clear()
+    {
+        afterCommit(() ->
+        {
+            if (rebuilding)
+            {
+                clearedWhileRebuilding = true;
+            }
+            usernames.clear();
+            emails.clear();
+        });
+    }
+
+    /**
+     * Applies a committed change to a user, first noting the user if the indexes are being built
+     *
+     * @param userid The primary key (long) of the user
+     * @param change Applies the change to the indexes
+     */
+    private void changed(
+        long userid,
+        Runnable change)
+    {
+        if (rebuilding)
+        {
+            changedWhileRebuilding.add(userid);
+        }
+        change.run();
+    }
+
+    /**
+     * Indexes the user as it is in the database, or removes it if it is no longer there
+     *
+     * @param userid The primary key (long) of the user
+     */
+    private void refresh(long userid)
+    {
+        // a committed transaction's persistence context may hold stale collections, so read in a new one
+        TransactionTemplate newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        newTransaction.setReadOnly(true);
+        List<User> found = newTransaction.execute(status -> userrepos.findWithUseremailsByUseridIn(Collections.singletonList(userid)));
+        if (found.isEmpty())
+        {
+            usernames.remove(userid);
+            emails.remove(userid);
+        } else
+        {
+            User user = found.get(0);
+            put(userid,
+                user.getUsername(),
+                emailsOf(user));
+        }
+    }
+
+    /**
+     * Puts the user into both indexes
+     *
+     * @param userid   The primary key (long) of the user
+     * @param username The username (String) of the user
+     * @param emails   The emails of the user
+     */
+    private void put(
+        long userid,
+        String username,
+        List<String> emails)
+    {
+        usernames.put(userid,
+            Collections.singletonList(username));
+        this.emails.put(userid,
+            emails);
+    }
+
+    /**
+     * The primary email and other emails of the user
+     *
+     * @param user The user, with its useremails loaded
+     * @return The emails of the user
+     */
+    private static List<String> emailsOf(User user)
+    {
+        List<String> userEmails = new ArrayList<>();
+        userEmails.add(user.getPrimaryemail());
+        for (Useremail useremail : user.getUseremails())
+        {
+            userEmails.add(useremail.getUseremail());
+        }
+        return userEmails;
+    }
+
+    /**
+     * Runs the given action once the current transaction commits, or straight away if there is no transaction
+     *
+     * @param action what to run
+     */
+    private void afterCommit(Runnable action)
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    action.run();
+                }
+            });
+        } else
+        {
+            action.run();
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.lambdaschool.usermodel.services;
 
+import com.lambdaschool.usermodel.models.ResourceVersion;
 import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.models.UserSummary;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The Service that works with User Model.
@@ -21,13 +24,54 @@ public interface UserService
     List<User> findAll();
 
     /**
-     * A list of all users whose username contains the given substring
+     * Walks through all the Users whose primary key is greater than the given cursor, one page at a time,
+     * handing each page to the given consumer. Pages are read using keyset pagination on the primary key and
+     * are detached once the consumer is done with them, so memory use stays constant no matter how many users there are.
+     *
+     * @param userid       The cursor, the primary key (long) of the last user already read. Use 0 to start from the beginning.
+     * @param pageSize     The number of users (int) to read per page
+     * @param pageConsumer Receives each page of Users in primary key order. Lazy associations can be read while in the consumer.
+     */
+    void findAllAfter(
+        long userid,
+        int pageSize,
+        Consumer<List<User>> pageConsumer);
+
+    /**
+     * A list of the users whose username contains the given substring, ignoring case, in primary key order.
+     * Only the first 1000 are returned. Use the paged search to see more.
      *
      * @param username The substring (String) of the username of the Users you seek
      * @return List of users whose username contains the given substring
      */
     List<User> findByNameContaining(String username);
 
+    /**
+     * A page of the users whose username contains the given substring, ignoring case, in primary key order
+     *
+     * @param username The substring (String) of the username of the Users you seek
+     * @param page     The page (int) to return, starting at 0
+     * @param size     The number of users (int) per page, at least 1
+     * @return The page of users whose username contains the given substring
+     */
+    List<User> findByNameContaining(
+        String username,
+        int page,
+        int size);
+
+    /**
+     * A page of the users with an email, primary or not, containing the given substring, ignoring case, in primary key order
+     *
+     * @param email The substring (String) of the email of the Users you seek
+     * @param page  The page (int) to return, starting at 0
+     * @param size  The number of users (int) per page, at least 1
+     * @return The page of users with an email containing the given substring
+     */
+    List<User> findByEmailContaining(
+        String email,
+        int page,
+        int size);
+
     /**
      * Returns the user with the given primary key.
      *
@@ -44,6 +88,71 @@ public interface UserService
      */
     User findByName(String name);
 
+    /**
+     * Walks through the summaries of all the Users whose primary key is greater than the given cursor, one page at a time,
+     * the same way findAllAfter does. Only the users' own columns are read, no User entities are loaded.
+     *
+     * @param userid       The cursor, the primary key (long) of the last user already read. Use 0 to start from the beginning.
+     * @param pageSize     The number of users (int) to read per page
+     * @param pageConsumer Receives each page of user summaries in primary key order
+     */
+    void findSummariesAfter(
+        long userid,
+        int pageSize,
+        Consumer<List<UserSummary>> pageConsumer);
+
+    /**
+     * A page of the summaries of the users whose username contains the given substring, ignoring case, in primary key order
+     *
+     * @param username The substring (String) of the username of the Users you seek
+     * @param page     The page (int) to return, starting at 0
+     * @param size     The number of users (int) per page, at least 1
+     * @return The page of user summaries whose username contains the given substring
+     */
+    List<UserSummary> findSummariesByNameContaining(
+        String username,
+        int page,
+        int size);
+
+    /**
+     * A page of the summaries of the users with an email, primary or not, containing the given substring,
+     * ignoring case, in primary key order
+     *
+     * @param email The substring (String) of the email of the Users you seek
+     * @param page  The page (int) to return, starting at 0
+     * @param size  The number of users (int) per page, at least 1
+     * @return The page of user summaries with an email containing the given substring
+     */
+    List<UserSummary> findSummariesByEmailContaining(
+        String email,
+        int page,
+        int size);
+
+    /**
+     * Returns the summary of the user with the given primary key. Only the user's own columns are read.
+     *
+     * @param id The primary key (long) of the user you seek.
+     * @return The summary of the user or throws an exception if not found.
+     */
+    UserSummary findSummaryById(long id);
+
+    /**
+     * Returns the summary of the user with the given name. Only the user's own columns are read.
+     *
+     * @param name The full name (String) of the User you seek.
+     * @return The summary of the user or throws an exception if not found.
+     */
+    UserSummary findSummaryByName(String name);
+
+    /**
+     * Returns the version of the user with the given primary key, covering the user, their emails and their roles.
+     * Only the version is read, not the user.
+     *
+     * @param id The primary key (long) of the user you seek.
+     * @return The version of the user or throws an exception if not found.
+     */
+    ResourceVersion findVersionById(long id);
+
     /**
      * Deletes the user record and its useremail items from the database based off of the provided primary key
      *
@@ -61,6 +170,21 @@ public interface UserService
      */
     User save(User user);
 
+    /**
+     * Same as save(User), but an existing user is only replaced if its ETag is one of those given.
+     * Replacing a user always counts as a change to it, so two concurrent replacements or updates
+     * of the same user cannot both succeed.
+     *
+     * @param user    the user object to be saved
+     * @param ifMatch the ETags (String) the client read the user with, as sent in If-Match. If null, the ETag is not checked.
+     * @return the saved user object including any automatically generated fields
+     * @throws com.lambdaschool.usermodel.exceptions.PreconditionFailedException if the user's ETag is not one of those given
+     * @throws org.springframework.dao.OptimisticLockingFailureException if another transaction changed the user first
+     */
+    User save(
+        User user,
+        String ifMatch);
+
     /**
      * Updates the provided fields in the user record referenced by the primary key.
      * <p>
@@ -75,6 +199,23 @@ public interface UserService
         User user,
         long id);
 
+    /**
+     * Same as update(User, long), but the user is only updated if its ETag is one of those given.
+     * Updating a user always counts as a change to it, so two concurrent replacements or updates
+     * of the same user cannot both succeed.
+     *
+     * @param user    just the user fields to be updated.
+     * @param id      The primary key (long) of the user to update
+     * @param ifMatch the ETags (String) the client read the user with, as sent in If-Match. If null, the ETag is not checked.
+     * @return the complete user object that got updated
+     * @throws com.lambdaschool.usermodel.exceptions.PreconditionFailedException if the user's ETag is not one of those given
+     * @throws org.springframework.dao.OptimisticLockingFailureException if another transaction changed the user first
+     */
+    User update(
+        User user,
+        long id,
+        String ifMatch);
+
     /**
      * Deletes all record and their associated records from the database
      */
@@ -1,18 +1,33 @@
 package com.lambdaschool.usermodel.services;
 
+import com.lambdaschool.usermodel.exceptions.BadRequestException;
 import com.lambdaschool.usermodel.exceptions.ResourceNotFoundException;
+import com.lambdaschool.usermodel.models.ResourceVersion;
 import com.lambdaschool.usermodel.models.Role;
 import com.lambdaschool.usermodel.models.User;
 import com.lambdaschool.usermodel.models.UserRoles;
+import com.lambdaschool.usermodel.models.UserSummary;
 import com.lambdaschool.usermodel.models.Useremail;
 import com.lambdaschool.usermodel.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Implements UserService Interface
@@ -22,6 +37,11 @@ import java.util.List;
 public class UserServiceImpl
     implements UserService
 {
+    /**
+     * The most users (int) returned by a search that is not paged
+     */
+    private static final int MAXIMUM_UNPAGED_USERS = 1000;
+
     /**
      * Connects this service to the User table.
      */
@@ -37,17 +57,133 @@ public class UserServiceImpl
     @Autowired
     private HelperFunctions helperFunctions;
 
+    /**
+     * Encrypts passwords as users are saved, on the bounded pool of threads configured in SecurityConfig
+     */
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    /**
+     * Cached security user details that must be dropped when a user changes
+     */
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    /**
+     * In memory indexes used to search users by substrings of their usernames and emails
+     */
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    /**
+     * Used to detach pages of users once they have been processed
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
     public User findUserById(long id) throws
                                       ResourceNotFoundException
     {
         return userrepos.findById(id)
-            .orElseThrow(() -> new ResourceNotFoundException("User id " + id + " not found!"));
+            .orElseThrow(() -> ResourceNotFoundException.withoutStackTrace("User id %d not found!",
+                id));
     }
 
     @Override
     public List<User> findByNameContaining(String username)
     {
-        return userrepos.findByUsernameContainingIgnoreCase(username.toLowerCase());
+        return findByNameContaining(username,
+            0,
+            MAXIMUM_UNPAGED_USERS);
+    }
+
+    @Override
+    public List<User> findByNameContaining(
+        String username,
+        int page,
+        int size)
+    {
+        int offset = offsetOf(page,
+            size);
+        if (!userSearchIndex.isReady())
+        {
+            return fetchAssociations(userrepos.findByUsernameContainingIgnoreCaseOrderByUseridAsc(username.toLowerCase(),
+                PageRequest.of(page,
+                    size)));
+        }
+        return findAllInOrder(userSearchIndex.findUsernamesContaining(username,
+            offset,
+            size));
+    }
+
+    @Override
+    public List<User> findByEmailContaining(
+        String email,
+        int page,
+        int size)
+    {
+        int offset = offsetOf(page,
+            size);
+        if (!userSearchIndex.isReady())
+        {
+            return fetchAssociations(userrepos.findByEmailContaining(email.toLowerCase(),
+                PageRequest.of(page,
+                    size)));
+        }
+        return findAllInOrder(userSearchIndex.findEmailsContaining(email,
+            offset,
+            size));
+    }
+
+    /**
+     * Works out how many matching users come before the given page
+     *
+     * @param page The page (int) asked for, starting at 0
+     * @param size The number of users (int) per page
+     * @return The number (int) of users before the page
+     * @throws BadRequestException if the page is negative, the size is less than 1,
+     *                                or the page starts past the most rows a query can skip
+     */
+    private static int offsetOf(
+        int page,
+        int size)
+    {
+        long offset = (long) page * size;
+        if (page < 0 || size < 1 || offset > Integer.MAX_VALUE)
+        {
+            throw BadRequestException.withoutStackTrace("Page %d of size %d does not exist. Pages start at 0, hold at least 1 user and start within the first %d users",
+                page,
+                size,
+                Integer.MAX_VALUE);
+        }
+        return (int) offset;
+    }
+
+    /**
+     * Reads the users with the given primary keys, with their associations, in the order given
+     *
+     * @param userids the primary keys (long) of the users, in the order wanted
+     * @return the users in the order given
+     */
+    private List<User> findAllInOrder(List<Long> userids)
+    {
+        Map<Long, User> found = new HashMap<>();
+        for (User user : userrepos.findAllById(userids))
+        {
+            found.put(user.getUserid(),
+                user);
+        }
+
+        List<User> users = new ArrayList<>();
+        for (long userid : userids)
+        {
+            User user = found.get(userid);
+            if (user != null)
+            {
+                users.add(user);
+            }
+        }
+        return fetchAssociations(users);
     }
 
     @Override
@@ -61,16 +197,192 @@ public class UserServiceImpl
         userrepos.findAll()
             .iterator()
             .forEachRemaining(list::add);
-        return list;
+        return fetchAssociations(list);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public void findAllAfter(
+        long userid,
+        int pageSize,
+        Consumer<List<User>> pageConsumer)
+    {
+        long cursor = userid;
+        List<User> page;
+        do
+        {
+            page = userrepos.findByUseridGreaterThanOrderByUseridAsc(cursor,
+                PageRequest.of(0,
+                    pageSize));
+            if (!page.isEmpty())
+            {
+                pageConsumer.accept(fetchAssociations(page));
+                cursor = page.get(page.size() - 1)
+                    .getUserid();
+            }
+
+            // drop the page from the persistence context so it can be garbage collected
+            entityManager.clear();
+        } while (page.size() == pageSize);
+    }
+
+    /**
+     * Loads the useremails and roles of a list of users up front. Without this, each user lazily loads its
+     * useremails and roles while being serialized, costing two more queries per user. With this, any number
+     * of users costs two more queries in total.
+     *
+     * @param users the users, attached to the current persistence context, whose associations are needed
+     * @return the same list of users, now with their associations loaded
+     */
+    private List<User> fetchAssociations(List<User> users)
+    {
+        if (!users.isEmpty())
+        {
+            List<Long> userids = users.stream()
+                .map(User::getUserid)
+                .collect(Collectors.toList());
+            userrepos.findWithUseremailsByUseridIn(userids);
+            userrepos.findWithRolesByUseridIn(userids);
+        }
+        return users;
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public void findSummariesAfter(
+        long userid,
+        int pageSize,
+        Consumer<List<UserSummary>> pageConsumer)
+    {
+        // summaries are not entities, so unlike findAllAfter there is nothing to clear from the persistence context
+        long cursor = userid;
+        List<UserSummary> page;
+        do
+        {
+            page = userrepos.findSummariesByUseridGreaterThanOrderByUseridAsc(cursor,
+                PageRequest.of(0,
+                    pageSize));
+            if (!page.isEmpty())
+            {
+                pageConsumer.accept(page);
+                cursor = page.get(page.size() - 1)
+                    .getUserid();
+            }
+        } while (page.size() == pageSize);
+    }
+
+    @Override
+    public List<UserSummary> findSummariesByNameContaining(
+        String username,
+        int page,
+        int size)
+    {
+        int offset = offsetOf(page,
+            size);
+        if (!userSearchIndex.isReady())
+        {
+            return userrepos.findSummariesByUsernameContainingIgnoreCaseOrderByUseridAsc(username.toLowerCase(),
+                PageRequest.of(page,
+                    size));
+        }
+        return findSummariesInOrder(userSearchIndex.findUsernamesContaining(username,
+            offset,
+            size));
+    }
+
+    @Override
+    public List<UserSummary> findSummariesByEmailContaining(
+        String email,
+        int page,
+        int size)
+    {
+        int offset = offsetOf(page,
+            size);
+        if (!userSearchIndex.isReady())
+        {
+            return userrepos.findSummariesByEmailContaining(email.toLowerCase(),
+                PageRequest.of(page,
+                    size));
+        }
+        return findSummariesInOrder(userSearchIndex.findEmailsContaining(email,
+            offset,
+            size));
+    }
+
+    /**
+     * Reads the summaries of the users with the given primary keys, in the order given
+     *
+     * @param userids the primary keys (long) of the users, in the order wanted
+     * @return the user summaries in the order given
+     */
+    private List<UserSummary> findSummariesInOrder(List<Long> userids)
+    {
+        if (userids.isEmpty())
+        {
+            return new ArrayList<>();
+        }
+
+        Map<Long, UserSummary> found = new HashMap<>();
+        for (UserSummary summary : userrepos.findSummariesByUseridIn(userids))
+        {
+            found.put(summary.getUserid(),
+                summary);
+        }
+
+        List<UserSummary> summaries = new ArrayList<>();
+        for (long userid : userids)
+        {
+            UserSummary summary = found.get(userid);
+            if (summary != null)
+            {
+                summaries.add(summary);
+            }
+        }
+        return summaries;
+    }
+
+    @Override
+    public UserSummary findSummaryById(long id)
+    {
+        return userrepos.findSummaryByUserid(id)
+            .orElseThrow(() -> ResourceNotFoundException.withoutStackTrace("User id %d not found!",
+                id));
+    }
+
+    @Override
+    public UserSummary findSummaryByName(String name)
+    {
+        UserSummary summary = userrepos.findSummaryByUsername(name.toLowerCase());
+        if (summary == null)
+        {
+            throw ResourceNotFoundException.withoutStackTrace("User name %s not found!",
+                name);
+        }
+        return summary;
+    }
+
+    @Override
+    public ResourceVersion findVersionById(long id)
+    {
+        ResourceVersion version = userrepos.findVersionByUserid(id);
+        if (version.getRowcount() == 0)
+        {
+            throw ResourceNotFoundException.withoutStackTrace("User id %d not found!",
+                id);
+        }
+        return version;
     }
 
     @Transactional
     @Override
     public void delete(long id)
     {
-        userrepos.findById(id)
-            .orElseThrow(() -> new ResourceNotFoundException("User id " + id + " not found!"));
+        User oldUser = userrepos.findById(id)
+            .orElseThrow(() -> ResourceNotFoundException.withoutStackTrace("User id %d not found!",
+                id));
+        userDetailsCache.invalidate(oldUser.getUsername());
         userrepos.deleteById(id);
+        userSearchIndex.remove(id);
     }
 
     @Override
@@ -79,7 +391,8 @@ public class UserServiceImpl
         User uu = userrepos.findByUsername(name.toLowerCase());
         if (uu == null)
         {
-            throw new ResourceNotFoundException("User name " + name + " not found!");
+            throw ResourceNotFoundException.withoutStackTrace("User name %s not found!",
+                name);
         }
         return uu;
     }
@@ -87,43 +400,50 @@ public class UserServiceImpl
     @Transactional
     @Override
     public User save(User user)
+    {
+        return save(user,
+            null);
+    }
+
+    @Transactional
+    @Override
+    public User save(
+        User user,
+        String ifMatch)
     {
         User newUser = new User();
 
         if (user.getUserid() != 0)
         {
-            userrepos.findById(user.getUserid())
-                .orElseThrow(() -> new ResourceNotFoundException("User id " + user.getUserid() + " not found!"));
-            newUser.setUserid(user.getUserid());
+            // replace the existing user in place so only what actually changed is written
+            newUser = userrepos.findById(user.getUserid())
+                .orElseThrow(() -> ResourceNotFoundException.withoutStackTrace("User id %d not found!",
+                    user.getUserid()));
+            lockForChange(newUser,
+                ifMatch);
+            userDetailsCache.invalidate(newUser.getUsername());
         }
+        userDetailsCache.invalidate(user.getUsername());
 
         newUser.setUsername(user.getUsername()
             .toLowerCase());
-        newUser.setPasswordNoEncrypt(user.getPassword());
+        newUser.setPasswordNoEncrypt(user.getPassword() == null ? null : passwordEncoder.encode(user.getPassword()));
         newUser.setPrimaryemail(user.getPrimaryemail()
             .toLowerCase());
 
-        newUser.getRoles()
-            .clear();
-        for (UserRoles ur : user.getRoles())
-        {
-            Role addRole = roleService.findRoleById(ur.getRole()
-                .getRoleid());
-            newUser.getRoles()
-                .add(new UserRoles(newUser,
-                    addRole));
-        }
+        replaceRoles(newUser,
+            user.getRoles());
+        replaceUseremails(newUser,
+            user.getUseremails());
 
-        newUser.getUseremails()
-            .clear();
-        for (Useremail ue : user.getUseremails())
+        if (newUser.getUserid() == 0)
         {
-            newUser.getUseremails()
-                .add(new Useremail(newUser,
-                    ue.getUseremail()));
+            newUser = userrepos.save(newUser);
         }
-
-        return userrepos.save(newUser);
+        // an existing user is managed, so its changes are written when the transaction flushes.
+        // Saving it again would merge each new UserRoles, reading it and its role back first.
+        userSearchIndex.index(newUser);
+        return newUser;
     }
 
     @Transactional
@@ -131,20 +451,37 @@ public class UserServiceImpl
     public User update(
         User user,
         long id)
+    {
+        return update(user,
+            id,
+            null);
+    }
+
+    @Transactional
+    @Override
+    public User update(
+        User user,
+        long id,
+        String ifMatch)
     {
         User currentUser = findUserById(id);
 
         if (helperFunctions.isAuthorizedToMakeChange(currentUser.getUsername()))
         {
+            lockForChange(currentUser,
+                ifMatch);
+            userDetailsCache.invalidate(currentUser.getUsername());
+
             if (user.getUsername() != null)
             {
                 currentUser.setUsername(user.getUsername()
                     .toLowerCase());
+                userDetailsCache.invalidate(currentUser.getUsername());
             }
 
             if (user.getPassword() != null)
             {
-                currentUser.setPasswordNoEncrypt(user.getPassword());
+                currentUser.setPasswordNoEncrypt(passwordEncoder.encode(user.getPassword()));
             }
 
             if (user.getPrimaryemail() != null)
@@ -156,33 +493,20 @@ public class UserServiceImpl
             if (user.getRoles()
                 .size() > 0)
             {
-                currentUser.getRoles()
-                    .clear();
-                for (UserRoles ur : user.getRoles())
-                {
-                    Role addRole = roleService.findRoleById(ur.getRole()
-                        .getRoleid());
-
-                    currentUser.getRoles()
-                        .add(new UserRoles(currentUser,
-                            addRole));
-                }
+                replaceRoles(currentUser,
+                    user.getRoles());
             }
 
             if (user.getUseremails()
                 .size() > 0)
             {
-                currentUser.getUseremails()
-                    .clear();
-                for (Useremail ue : user.getUseremails())
-                {
-                    currentUser.getUseremails()
-                        .add(new Useremail(currentUser,
-                            ue.getUseremail()));
-                }
+                replaceUseremails(currentUser,
+                    user.getUseremails());
             }
 
-            return userrepos.save(currentUser);
+            // currentUser is managed, so its changes are written when the transaction flushes
+            userSearchIndex.index(currentUser);
+            return currentUser;
         } else
         {
             // note we should never get to this line but is needed for the compiler
@@ -191,10 +515,102 @@ public class UserServiceImpl
         }
     }
 
+    /**
+     * Checks the user has not changed since the client read it, then marks it as changed.
+     * <p>
+     * Changes to a user's roles and useremails are written to their own tables and would leave the version of the user
+     * untouched. Forcing the version up means every replacement or update of the user writes it, and Hibernate only
+     * writes it if the version is still the one read here. Of two concurrent changes to the same user, the second
+     * to commit therefore fails with an OptimisticLockingFailureException.
+     *
+     * @param currentUser the user about to change, attached to the current persistence context
+     * @param ifMatch     the ETags (String) the client read the user with. If null, the ETag is not checked.
+     */
+    private void lockForChange(
+        User currentUser,
+        String ifMatch)
+    {
+        if (ifMatch != null)
+        {
+            helperFunctions.checkIfMatch(userrepos.findVersionByUserid(currentUser.getUserid()),
+                ifMatch);
+        }
+        entityManager.lock(currentUser,
+            LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+    }
+
+    /**
+     * Makes the roles of the user match the given roles. Only the differences are written to the database:
+     * roles no longer wanted are removed, new roles are added and roles the user keeps are left alone.
+     *
+     * @param currentUser the user whose roles change
+     * @param roles       the roles the user should end up with. Only the role ids are used.
+     */
+    private void replaceRoles(
+        User currentUser,
+        Set<UserRoles> roles)
+    {
+        Set<Long> wanted = new LinkedHashSet<>();
+        for (UserRoles ur : roles)
+        {
+            wanted.add(ur.getRole()
+                .getRoleid());
+        }
+
+        Set<Long> kept = new HashSet<>();
+        currentUser.getRoles()
+            .removeIf(ur -> !wanted.contains(ur.getRole()
+                .getRoleid()) || !kept.add(ur.getRole()
+                .getRoleid()));
+
+        wanted.removeAll(kept);
+        if (!wanted.isEmpty())
+        {
+            Map<Long, Role> addRoles = roleService.findRolesByIds(wanted);
+            for (long roleid : wanted)
+            {
+                currentUser.getRoles()
+                    .add(new UserRoles(currentUser,
+                        addRoles.get(roleid)));
+            }
+        }
+    }
+
+    /**
+     * Makes the useremails of the user match the given useremails. Only the differences are written to the database:
+     * emails no longer wanted are removed, new emails are added and emails the user keeps are left alone.
+     *
+     * @param currentUser the user whose useremails change
+     * @param useremails  the useremails the user should end up with. Only the email addresses are used.
+     */
+    private void replaceUseremails(
+        User currentUser,
+        List<Useremail> useremails)
+    {
+        List<String> missing = new ArrayList<>();
+        for (Useremail ue : useremails)
+        {
+            missing.add(ue.getUseremail());
+        }
+
+        // each email wanted keeps at most one existing useremail with that address
+        currentUser.getUseremails()
+            .removeIf(ue -> !missing.remove(ue.getUseremail()));
+
+        for (String email : missing)
+        {
+            currentUser.getUseremails()
+                .add(new Useremail(currentUser,
+                    email));
+        }
+    }
+
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     @Override
     public void deleteAll()
     {
+        userDetailsCache.invalidateAll();
         userrepos.deleteAll();
+        userSearchIndex.clear();
     }
 }
@@ -1,6 +1,8 @@
 package com.lambdaschool.usermodel.services;
 
+import com.lambdaschool.usermodel.models.ResourceVersion;
 import com.lambdaschool.usermodel.models.Useremail;
+import com.lambdaschool.usermodel.models.UseremailSummary;
 
 import java.util.List;
 
@@ -27,6 +29,32 @@ public interface UseremailService
      */
     Useremail findUseremailById(long id);
 
+    /**
+     * Returns the summaries of all user email combinations, each with the primary key of its user
+     * rather than the whole user, in primary key order
+     *
+     * @return List of the summaries of all user email combinations
+     */
+    List<UseremailSummary> findAllSummaries();
+
+    /**
+     * Returns the summary of the user email combination associated with the given id,
+     * with the primary key of its user rather than the whole user
+     *
+     * @param id The primary key (long) of the user email combination you seek
+     * @return The summary of the user email combination you seek
+     */
+    UseremailSummary findSummaryById(long id);
+
+    /**
+     * Returns the version of the user email combination associated with the given id, covering the combination
+     * and its user. Only the version is read, not the combination.
+     *
+     * @param id The primary key (long) of the user email combination you seek
+     * @return The version of the user email combination you seek
+     */
+    ResourceVersion findVersionById(long id);
+
     /**
      * Remove the user email combination referenced by the given id
      *
@@ -45,6 +73,23 @@ public interface UseremailService
         long useremailid,
         String emailaddress);
 
+    /**
+     * Same as update(long, String), but the email is only replaced if the ETag of the user email combination is one
+     * of those given. Of two concurrent changes to the same combination, the second to commit fails.
+     *
+     * @param useremailid  The primary key (long) of the user email combination you seek
+     * @param emailaddress The new email address (String) for this user email combination
+     * @param ifMatch      the ETags (String) the client read the combination with, as sent in If-Match.
+     *                     If null, the ETag is not checked.
+     * @return The Useremail object that you updated including the new email address
+     * @throws com.lambdaschool.usermodel.exceptions.PreconditionFailedException if the ETag is not one of those given
+     * @throws org.springframework.dao.OptimisticLockingFailureException if another transaction changed the combination first
+     */
+    Useremail update(
+        long useremailid,
+        String emailaddress,
+        String ifMatch);
+
     /**
      * Add a new User Email combination
      *
@@ -1,8 +1,10 @@
 package com.lambdaschool.usermodel.services;
 
 import com.lambdaschool.usermodel.exceptions.ResourceNotFoundException;
+import com.lambdaschool.usermodel.models.ResourceVersion;
 import com.lambdaschool.usermodel.models.User;
 import com.lambdaschool.usermodel.models.Useremail;
+import com.lambdaschool.usermodel.models.UseremailSummary;
 import com.lambdaschool.usermodel.repository.UseremailRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -34,6 +36,12 @@ public class UseremailServiceImpl
     @Autowired
     private HelperFunctions helperFunctions;
 
+    /**
+     * In memory indexes of user emails that must be kept up to date as useremails change
+     */
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
     @Override
     public List<Useremail> findAll()
     {
@@ -52,7 +60,34 @@ public class UseremailServiceImpl
     public Useremail findUseremailById(long id)
     {
         return useremailrepos.findById(id)
-            .orElseThrow(() -> new ResourceNotFoundException("Useremail with id " + id + " Not Found!"));
+            .orElseThrow(() -> ResourceNotFoundException.withoutStackTrace("Useremail with id %d Not Found!",
+                id));
+    }
+
+    @Override
+    public List<UseremailSummary> findAllSummaries()
+    {
+        return useremailrepos.findAllSummaries();
+    }
+
+    @Override
+    public UseremailSummary findSummaryById(long id)
+    {
+        return useremailrepos.findSummaryById(id)
+            .orElseThrow(() -> ResourceNotFoundException.withoutStackTrace("Useremail with id %d Not Found!",
+                id));
+    }
+
+    @Override
+    public ResourceVersion findVersionById(long id)
+    {
+        ResourceVersion version = useremailrepos.findVersionByUseremailid(id);
+        if (version.getRowcount() == 0)
+        {
+            throw ResourceNotFoundException.withoutStackTrace("Useremail with id %d Not Found!",
+                id);
+        }
+        return version;
     }
 
     @Transactional
@@ -67,11 +102,16 @@ public class UseremailServiceImpl
                 .getUser()
                 .getUsername()))
             {
+                userSearchIndex.reindex(useremailrepos.findById(id)
+                    .get()
+                    .getUser()
+                    .getUserid());
                 useremailrepos.deleteById(id);
             }
         } else
         {
-            throw new ResourceNotFoundException("Useremail with id " + id + " Not Found!");
+            throw ResourceNotFoundException.withoutStackTrace("Useremail with id %d Not Found!",
+                id);
         }
     }
 
@@ -80,6 +120,18 @@ public class UseremailServiceImpl
     public Useremail update(
         long useremailid,
         String emailaddress)
+    {
+        return update(useremailid,
+            emailaddress,
+            null);
+    }
+
+    @Transactional
+    @Override
+    public Useremail update(
+        long useremailid,
+        String emailaddress,
+        String ifMatch)
     {
         if (useremailrepos.findById(useremailid)
             .isPresent())
@@ -89,8 +141,13 @@ public class UseremailServiceImpl
                 .getUser()
                 .getUsername()))
             {
+                // the useremail is written only if its version is still the one read here
+                helperFunctions.checkIfMatch(useremailrepos.findVersionByUseremailid(useremailid),
+                    ifMatch);
                 Useremail useremail = findUseremailById(useremailid);
                 useremail.setUseremail(emailaddress.toLowerCase());
+                userSearchIndex.reindex(useremail.getUser()
+                    .getUserid());
                 return useremailrepos.save(useremail);
             } else
             {
@@ -100,7 +157,8 @@ public class UseremailServiceImpl
             }
         } else
         {
-            throw new ResourceNotFoundException("Useremail with id " + useremailid + " Not Found!");
+            throw ResourceNotFoundException.withoutStackTrace("Useremail with id %d Not Found!",
+                useremailid);
         }
     }
 
@@ -116,6 +174,7 @@ public class UseremailServiceImpl
         {
             Useremail newUserEmail = new Useremail(currentUser,
                 emailaddress);
+            userSearchIndex.reindex(userid);
             return useremailrepos.save(newUserEmail);
         } else
         {
@@ -0,0 +1,52 @@
+package com.lambdaschool.usermodel;
+
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Gets access tokens for tests that call the application over HTTP
+ */
+public final class TestTokens
+{
+    private TestTokens()
+    {
+    }
+
+    /**
+     * Signs on through /login with the password grant, as the client named by OAUTHCLIENTID and OAUTHCLIENTSECRET
+     *
+     * @param restTemplate The template of the running application
+     * @param username     The username of the user signing on
+     * @param password     Their password
+     * @return The access token (String) given out
+     */
+    public static String signOn(
+        TestRestTemplate restTemplate,
+        String username,
+        String password)
+    {
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("grant_type",
+            "password");
+        form.add("username",
+            username);
+        form.add("password",
+            password);
+        ResponseEntity<Map> login = restTemplate.withBasicAuth(System.getenv("OAUTHCLIENTID"),
+            System.getenv("OAUTHCLIENTSECRET"))
+            .postForEntity("/login",
+                form,
+                Map.class);
+        assertEquals(HttpStatus.OK,
+            login.getStatusCode());
+        return (String) login.getBody()
+            .get("access_token");
+    }
+}
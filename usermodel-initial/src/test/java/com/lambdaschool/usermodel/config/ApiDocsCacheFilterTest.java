@@ -0,0 +1,147 @@
+package com.lambdaschool.usermodel.config;
+
+import com.lambdaschool.usermodel.UserModelApplicationTesting;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Reads the API document plain and gzipped and checks each form has an ETag of its own, so a client revalidating
+ * one form is never told it already has the other. Read with HttpURLConnection, which neither asks for nor undoes
+ * compression.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    classes = UserModelApplicationTesting.class,
+    properties = {
+        "h2.tcp.enabled=false",
+        "h2.web.enabled=false"})
+public class ApiDocsCacheFilterTest
+{
+    @LocalServerPort
+    private int port;
+
+    @Test
+    public void plainAndGzippedDocumentsHaveTheirOwnETags() throws Exception
+    {
+        ApiDocs plain = get(null,
+            null);
+        assertEquals(HttpStatus.OK.value(),
+            plain.status);
+        assertNull(plain.contentEncoding);
+        assertNotNull(plain.etag);
+
+        ApiDocs gzipped = get("gzip, deflate",
+            null);
+        assertEquals(HttpStatus.OK.value(),
+            gzipped.status);
+        assertEquals("gzip",
+            gzipped.contentEncoding);
+        assertNotEquals(plain.etag,
+            gzipped.etag);
+        assertArrayEquals(plain.body,
+            StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(gzipped.body))));
+
+        // the ETag of the other form is not the one the client would get, so the document is sent
+        assertEquals(HttpStatus.OK.value(),
+            get("gzip",
+                plain.etag).status);
+        assertEquals(HttpStatus.OK.value(),
+            get(null,
+                gzipped.etag).status);
+
+        assertEquals(HttpStatus.NOT_MODIFIED.value(),
+            get("gzip",
+                gzipped.etag).status);
+        assertEquals(HttpStatus.NOT_MODIFIED.value(),
+            get(null,
+                plain.etag).status);
+    }
+
+    @Test
+    public void gzipWithAQualityOfZeroIsNotSent() throws Exception
+    {
+        ApiDocs refused = get("gzip;q=0, identity",
+            null);
+        assertEquals(HttpStatus.OK.value(),
+            refused.status);
+        assertNull(refused.contentEncoding);
+        assertEquals(get(null,
+            null).etag,
+            refused.etag);
+
+        assertEquals("gzip",
+            get("deflate, GZIP;q=0.5",
+                null).contentEncoding);
+    }
+
+    /**
+     * Reads the API document
+     *
+     * @param acceptEncoding The Accept-Encoding header, or null to send none
+     * @param ifNoneMatch    The If-None-Match header, or null to send none
+     * @return The response as received
+     */
+    private ApiDocs get(
+        String acceptEncoding,
+        String ifNoneMatch) throws
+                            IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/v2/api-docs").openConnection();
+        if (acceptEncoding != null)
+        {
+            connection.setRequestProperty(HttpHeaders.ACCEPT_ENCODING,
+                acceptEncoding);
+        }
+        if (ifNoneMatch != null)
+        {
+            connection.setRequestProperty(HttpHeaders.IF_NONE_MATCH,
+                ifNoneMatch);
+        }
+
+        ApiDocs apiDocs = new ApiDocs();
+        apiDocs.status = connection.getResponseCode();
+        apiDocs.contentEncoding = connection.getContentEncoding();
+        apiDocs.etag = connection.getHeaderField(HttpHeaders.ETAG);
+        if (apiDocs.status == HttpStatus.OK.value())
+        {
+            try (InputStream in = connection.getInputStream())
+            {
+                apiDocs.body = StreamUtils.copyToByteArray(in);
+            }
+        }
+        return apiDocs;
+    }
+
+    /**
+     * The API document as received
+     */
+    private static class ApiDocs
+    {
+        int status;
+
+        String contentEncoding;
+
+        String etag;
+
+        byte[] body;
+    }
+}
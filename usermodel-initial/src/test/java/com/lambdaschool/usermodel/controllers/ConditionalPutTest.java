@@ -0,0 +1,198 @@
+package com.lambdaschool.usermodel.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lambdaschool.usermodel.TestTokens;
+import com.lambdaschool.usermodel.UserModelApplicationTesting;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Renames a role and changes a useremail with If-Match. Each is changed behind the client's back after it was read,
+ * so the ETag the client sends is stale and nothing may change until the client reads it again.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    classes = UserModelApplicationTesting.class,
+    properties = {
+        "h2.tcp.enabled=false",
+        "h2.web.enabled=false"})
+public class ConditionalPutTest
+{
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String token;
+
+    @Before
+    public void setUp()
+    {
+        token = TestTokens.signOn(restTemplate,
+            "admin",
+            "password");
+    }
+
+    @Test
+    public void staleRoleIsNotRenamed() throws Exception
+    {
+        long roleid = objectMapper.readTree(exchange(HttpMethod.GET,
+            "/roles/role/name/data",
+            null).getBody())
+            .get("roleid")
+            .asLong();
+        String etag = exchange(HttpMethod.GET,
+            "/roles/role/" + roleid,
+            null).getHeaders()
+            .getETag();
+        assertNotNull(etag);
+
+        assertEquals(1,
+            jdbcTemplate.update("UPDATE roles SET version = version + 1 WHERE roleid = ?",
+                roleid));
+
+        HttpHeaders ifMatch = new HttpHeaders();
+        ifMatch.setIfMatch(etag);
+        assertEquals(HttpStatus.PRECONDITION_FAILED,
+            exchange(HttpMethod.PUT,
+                "/roles/role/" + roleid,
+                "{\"name\":\"STALE\"}",
+                ifMatch).getStatusCode());
+        assertEquals("DATA",
+            objectMapper.readTree(exchange(HttpMethod.GET,
+                "/roles/role/" + roleid,
+                null).getBody())
+                .get("name")
+                .asText());
+
+        ifMatch.setIfMatch(exchange(HttpMethod.GET,
+            "/roles/role/" + roleid,
+            null).getHeaders()
+            .getETag());
+        assertEquals(HttpStatus.OK,
+            exchange(HttpMethod.PUT,
+                "/roles/role/" + roleid,
+                "{\"name\":\"DATA\"}",
+                ifMatch).getStatusCode());
+    }
+
+    @Test
+    public void staleUseremailIsNotChanged() throws Exception
+    {
+        long userid = objectMapper.readTree(exchange(HttpMethod.GET,
+            "/users/user/name/puttat",
+            null).getBody())
+            .get("userid")
+            .asLong();
+        ResponseEntity<String> added = exchange(HttpMethod.POST,
+            "/useremails/user/" + userid + "/email/before@conditional.local",
+            null);
+        assertEquals(HttpStatus.CREATED,
+            added.getStatusCode());
+        String useremail = added.getHeaders()
+            .getLocation()
+            .getPath();
+        long useremailid = Long.parseLong(useremail.substring(useremail.lastIndexOf('/') + 1));
+
+        try
+        {
+            String etag = exchange(HttpMethod.GET,
+                useremail,
+                null).getHeaders()
+                .getETag();
+            assertNotNull(etag);
+
+            assertEquals(1,
+                jdbcTemplate.update("UPDATE useremails SET version = version + 1 WHERE useremailid = ?",
+                    useremailid));
+
+            HttpHeaders ifMatch = new HttpHeaders();
+            ifMatch.setIfMatch(etag);
+            assertEquals(HttpStatus.PRECONDITION_FAILED,
+                exchange(HttpMethod.PUT,
+                    useremail + "/email/stale@conditional.local",
+                    null,
+                    ifMatch).getStatusCode());
+            assertEquals("before@conditional.local",
+                objectMapper.readTree(exchange(HttpMethod.GET,
+                    useremail,
+                    null).getBody())
+                    .get("useremail")
+                    .asText());
+
+            ifMatch.setIfMatch(exchange(HttpMethod.GET,
+                useremail,
+                null).getHeaders()
+                .getETag());
+            assertEquals(HttpStatus.OK,
+                exchange(HttpMethod.PUT,
+                    useremail + "/email/after@conditional.local",
+                    null,
+                    ifMatch).getStatusCode());
+            assertEquals("after@conditional.local",
+                objectMapper.readTree(exchange(HttpMethod.GET,
+                    useremail,
+                    null).getBody())
+                    .get("useremail")
+                    .asText());
+        } finally
+        {
+            exchange(HttpMethod.DELETE,
+                useremail,
+                null);
+        }
+    }
+
+    private ResponseEntity<String> exchange(
+        HttpMethod method,
+        String url,
+        String body)
+    {
+        return exchange(method,
+            url,
+            body,
+            new HttpHeaders());
+    }
+
+    /**
+     * Sends a request as admin
+     *
+     * @param method  The HTTP method
+     * @param url     The path to request
+     * @param body    The JSON body, or null
+     * @param headers Any other headers to send
+     * @return The response, whatever its status
+     */
+    private ResponseEntity<String> exchange(
+        HttpMethod method,
+        String url,
+        String body,
+        HttpHeaders headers)
+    {
+        headers.setBearerAuth(token);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.exchange(url,
+            method,
+            new HttpEntity<>(body,
+                headers),
+            String.class);
+    }
+}
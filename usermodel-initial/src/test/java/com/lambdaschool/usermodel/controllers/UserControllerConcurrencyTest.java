@@ -0,0 +1,260 @@
+package com.lambdaschool.usermodel.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lambdaschool.usermodel.TestTokens;
+import com.lambdaschool.usermodel.UserModelApplicationTesting;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hammers one user with concurrent read-modify-write PATCHes over HTTP. Each client reads the user, works out
+ * the next value of a counter kept in the primary email and writes it back with If-Match, retrying whenever
+ * it is told the user changed under it. If no update is lost, the counter ends up at the number of clients.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    classes = UserModelApplicationTesting.class,
+    properties = {
+        "h2.tcp.enabled=false",
+        "h2.web.enabled=false"})
+public class UserControllerConcurrencyTest
+{
+    /**
+     * The seeded user whose primary email is used as the counter
+     */
+    private static final String USERNAME = "barnbarn";
+
+    private static final int THREADS = 64;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String token;
+
+    private long userid;
+
+    private String originalEmail;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        token = TestTokens.signOn(restTemplate,
+            "admin",
+            "password");
+
+        ResponseEntity<String> user = exchange(HttpMethod.GET,
+            "/users/user/name/" + USERNAME,
+            null,
+            null);
+        userid = objectMapper.readTree(user.getBody())
+            .get("userid")
+            .asLong();
+        originalEmail = objectMapper.readTree(user.getBody())
+            .get("primaryemail")
+            .asText();
+    }
+
+    @After
+    public void tearDown()
+    {
+        exchange(HttpMethod.PATCH,
+            "/users/user/" + userid,
+            "{\"primaryemail\":\"" + originalEmail + "\"}",
+            null);
+    }
+
+    @Test
+    public void concurrentPatchesLoseNoUpdates() throws Exception
+    {
+        assertEquals(HttpStatus.OK,
+            exchange(HttpMethod.PATCH,
+                "/users/user/" + userid,
+                "{\"primaryemail\":\"counter0@lambdaschool.local\"}",
+                null).getStatusCode());
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService clients = Executors.newFixedThreadPool(THREADS);
+        try
+        {
+            List<Future<?>> done = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++)
+            {
+                done.add(clients.submit(() ->
+                {
+                    start.await();
+                    while (true)
+                    {
+                        ResponseEntity<String> read = exchange(HttpMethod.GET,
+                            "/users/user/" + userid,
+                            null,
+                            null);
+                        assertEquals(HttpStatus.OK,
+                            read.getStatusCode());
+                        String etag = read.getHeaders()
+                            .getETag();
+                        assertNotNull(etag);
+                        int counter = counterOf(read.getBody());
+
+                        ResponseEntity<String> write = exchange(HttpMethod.PATCH,
+                            "/users/user/" + userid,
+                            "{\"primaryemail\":\"counter" + (counter + 1) + "@lambdaschool.local\"}",
+                            etag);
+                        if (write.getStatusCode() == HttpStatus.OK)
+                        {
+                            return null;
+                        }
+                        assertTrue("unexpected status " + write.getStatusCode(),
+                            write.getStatusCode() == HttpStatus.PRECONDITION_FAILED || write.getStatusCode() == HttpStatus.CONFLICT);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : done)
+            {
+                f.get(5,
+                    TimeUnit.MINUTES);
+            }
+        } finally
+        {
+            clients.shutdownNow();
+        }
+
+        int counter = counterOf(exchange(HttpMethod.GET,
+            "/users/user/" + userid,
+            null,
+            null).getBody());
+        assertEquals(THREADS,
+            counter);
+    }
+
+    @Test
+    public void staleIfMatchIsRejected() throws Exception
+    {
+        String etag = exchange(HttpMethod.GET,
+            "/users/user/" + userid,
+            null,
+            null).getHeaders()
+            .getETag();
+
+        assertEquals(HttpStatus.OK,
+            exchange(HttpMethod.PATCH,
+                "/users/user/" + userid,
+                "{\"primaryemail\":\"first@lambdaschool.local\"}",
+                etag).getStatusCode());
+        assertEquals(HttpStatus.PRECONDITION_FAILED,
+            exchange(HttpMethod.PATCH,
+                "/users/user/" + userid,
+                "{\"primaryemail\":\"second@lambdaschool.local\"}",
+                etag).getStatusCode());
+        assertEquals("first@lambdaschool.local",
+            objectMapper.readTree(exchange(HttpMethod.GET,
+                "/users/user/" + userid,
+                null,
+                null).getBody())
+                .get("primaryemail")
+                .asText());
+    }
+
+    @Test
+    public void ifMatchIsRejectedWhenOnlyTheVersionChanged() throws Exception
+    {
+        String etag = exchange(HttpMethod.GET,
+            "/users/user/" + userid,
+            null,
+            null).getHeaders()
+            .getETag();
+
+        // a change that lands in the same tick of the clock as the read leaves the dates and row counts as they were
+        assertEquals(1,
+            jdbcTemplate.update("UPDATE users SET version = version + 1 WHERE userid = ?",
+                userid));
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED,
+            exchange(HttpMethod.PATCH,
+                "/users/user/" + userid,
+                "{\"primaryemail\":\"stale@lambdaschool.local\"}",
+                etag).getStatusCode());
+        assertEquals(originalEmail,
+            objectMapper.readTree(exchange(HttpMethod.GET,
+                "/users/user/" + userid,
+                null,
+                null).getBody())
+                .get("primaryemail")
+                .asText());
+    }
+
+    /**
+     * Sends a request as admin
+     *
+     * @param method  The HTTP method
+     * @param url     The path to request
+     * @param body    The JSON body, or null
+     * @param ifMatch The If-Match header, or null
+     * @return The response, whatever its status
+     */
+    private ResponseEntity<String> exchange(
+        HttpMethod method,
+        String url,
+        String body,
+        String ifMatch)
+    {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (ifMatch != null)
+        {
+            headers.setIfMatch(ifMatch);
+        }
+        return restTemplate.exchange(url,
+            method,
+            new HttpEntity<>(body,
+                headers),
+            String.class);
+    }
+
+    /**
+     * The counter held in the primary email of the user, counterN@lambdaschool.local
+     *
+     * @param userJson The user as returned by GET
+     * @return the counter N
+     */
+    private int counterOf(String userJson) throws
+                                           Exception
+    {
+        String email = objectMapper.readTree(userJson)
+            .get("primaryemail")
+            .asText();
+        return Integer.parseInt(email.substring("counter".length(),
+            email.indexOf('@')));
+    }
+}
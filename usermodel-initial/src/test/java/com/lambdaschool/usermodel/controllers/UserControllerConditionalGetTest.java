@@ -0,0 +1,132 @@
+package com.lambdaschool.usermodel.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lambdaschool.usermodel.TestTokens;
+import com.lambdaschool.usermodel.UserModelApplicationTesting;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Reads a user with If-None-Match before and after one of their useremails is deleted. Deleting the newest row of a
+ * user moves their latest lastmodifieddate back, so a client revalidating by date would keep its stale copy.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    classes = UserModelApplicationTesting.class,
+    properties = {
+        "h2.tcp.enabled=false",
+        "h2.web.enabled=false"})
+public class UserControllerConditionalGetTest
+{
+    /**
+     * The seeded user given an extra useremail
+     */
+    private static final String USERNAME = "puttat";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String token;
+
+    private long userid;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        token = TestTokens.signOn(restTemplate,
+            "admin",
+            "password");
+
+        userid = objectMapper.readTree(exchange(HttpMethod.GET,
+            "/users/user/name/" + USERNAME,
+            new HttpHeaders()).getBody())
+            .get("userid")
+            .asLong();
+    }
+
+    @Test
+    public void deletingAUseremailChangesTheETagOfItsUser()
+    {
+        ResponseEntity<String> added = exchange(HttpMethod.POST,
+            "/useremails/user/" + userid + "/email/extra@conditional.local",
+            new HttpHeaders());
+        assertEquals(HttpStatus.CREATED,
+            added.getStatusCode());
+        String useremail = added.getHeaders()
+            .getLocation()
+            .getPath();
+
+        ResponseEntity<String> read = exchange(HttpMethod.GET,
+            "/users/user/" + userid,
+            new HttpHeaders());
+        String etag = read.getHeaders()
+            .getETag();
+        assertNotNull(etag);
+        assertNull(read.getHeaders()
+            .getFirst(HttpHeaders.LAST_MODIFIED));
+
+        HttpHeaders ifNoneMatch = new HttpHeaders();
+        ifNoneMatch.setIfNoneMatch(etag);
+        assertEquals(HttpStatus.NOT_MODIFIED,
+            exchange(HttpMethod.GET,
+                "/users/user/" + userid,
+                ifNoneMatch).getStatusCode());
+
+        assertEquals(HttpStatus.OK,
+            exchange(HttpMethod.DELETE,
+                useremail,
+                new HttpHeaders()).getStatusCode());
+
+        ResponseEntity<String> reread = exchange(HttpMethod.GET,
+            "/users/user/" + userid,
+            ifNoneMatch);
+        assertEquals(HttpStatus.OK,
+            reread.getStatusCode());
+        assertNotEquals(etag,
+            reread.getHeaders()
+                .getETag());
+        assertFalse(reread.getBody()
+            .contains("extra@conditional.local"));
+    }
+
+    @Test
+    public void ifModifiedSinceAloneIsNotEnoughForNotModified()
+    {
+        HttpHeaders ifModifiedSince = new HttpHeaders();
+        ifModifiedSince.setIfModifiedSince(System.currentTimeMillis() + 24 * 60 * 60 * 1000L);
+        assertEquals(HttpStatus.OK,
+            exchange(HttpMethod.GET,
+                "/users/user/" + userid,
+                ifModifiedSince).getStatusCode());
+    }
+
+    private ResponseEntity<String> exchange(
+        HttpMethod method,
+        String url,
+        HttpHeaders headers)
+    {
+        headers.setBearerAuth(token);
+        return restTemplate.exchange(url,
+            method,
+            new HttpEntity<>(headers),
+            String.class);
+    }
+}
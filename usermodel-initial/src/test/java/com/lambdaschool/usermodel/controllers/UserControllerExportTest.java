@@ -0,0 +1,376 @@
+package com.lambdaschool.usermodel.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lambdaschool.usermodel.TestTokens;
+import com.lambdaschool.usermodel.UserModelApplicationTesting;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exports the seeded users as NDJSON and as CSV and checks every row against the users as GET /users/users returns them.
+ * The cursors fetch 2 rows at a time, so the users, useremails and roles cursors are merged across many fetches.
+ * <p>
+ * The export is read with HttpURLConnection, which neither asks for nor undoes compression,
+ * so the Accept-Encoding sent and the Content-Encoding returned are exactly what the test says.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    classes = UserModelApplicationTesting.class,
+    properties = {
+        "usermodel.users.export.fetch-size=2",
+        "usermodel.security.bcrypt-strength=4",
+        "h2.tcp.enabled=false",
+        "h2.web.enabled=false"})
+public class UserControllerExportTest
+{
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @LocalServerPort
+    private int port;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String token;
+
+    /**
+     * The users as GET /users/users returns them, each reduced to the exported fields and keyed by user id
+     */
+    private Map<Long, List<String>> expected;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        token = TestTokens.signOn(restTemplate,
+            "admin",
+            "password");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        ResponseEntity<String> users = restTemplate.exchange("/users/users",
+            HttpMethod.GET,
+            new HttpEntity<>(headers),
+            String.class);
+        expected = new LinkedHashMap<>();
+        for (JsonNode user : objectMapper.readTree(users.getBody()))
+        {
+            List<String> useremails = new ArrayList<>();
+            for (JsonNode useremail : user.get("useremails"))
+            {
+                useremails.add(useremail.get("useremail")
+                    .asText());
+            }
+            List<String> roles = new ArrayList<>();
+            for (JsonNode userRole : user.get("roles"))
+            {
+                roles.add(userRole.get("role")
+                    .get("name")
+                    .asText());
+            }
+            roles.sort(null);
+            expected.put(user.get("userid")
+                    .asLong(),
+                Arrays.asList(user.get("username")
+                        .asText(),
+                    user.get("primaryemail")
+                        .asText(),
+                    String.join(";",
+                        useremails),
+                    String.join(";",
+                        roles)));
+        }
+    }
+
+    @Test
+    public void exportNdjsonHasEveryUserWithTheirEmailsAndRoles() throws Exception
+    {
+        Export export = export("",
+            "application/x-ndjson",
+            null);
+
+        assertEquals("application/x-ndjson;charset=UTF-8",
+            export.contentType);
+        Map<Long, List<String>> exported = new LinkedHashMap<>();
+        for (String line : export.lines())
+        {
+            JsonNode row = objectMapper.readTree(line);
+            assertEquals(Arrays.asList("userid",
+                "username",
+                "primaryemail",
+                "useremails",
+                "roles"),
+                fieldNames(row));
+            exported.put(row.get("userid")
+                    .asLong(),
+                Arrays.asList(row.get("username")
+                        .asText(),
+                    row.get("primaryemail")
+                        .asText(),
+                    join(row.get("useremails")),
+                    join(row.get("roles"))));
+        }
+        assertEquals(expected,
+            exported);
+        assertEquals(new ArrayList<>(expected.keySet()),
+            new ArrayList<>(exported.keySet()));
+    }
+
+    @Test
+    public void exportCsvHasEveryUserWithTheirEmailsAndRoles() throws Exception
+    {
+        Export export = export("",
+            "text/csv",
+            "gzip");
+
+        assertEquals("gzip",
+            export.contentEncoding);
+        assertEquals("text/csv;charset=UTF-8",
+            export.contentType);
+        List<String> lines = export.lines();
+        assertEquals("userid,username,primaryemail,useremails,roles",
+            lines.get(0));
+        Map<Long, List<String>> exported = new LinkedHashMap<>();
+        for (String line : lines.subList(1,
+            lines.size()))
+        {
+            // the seeded users hold no commas or quotes, so no field is quoted
+            List<String> fields = Arrays.asList(line.split(",",
+                -1));
+            exported.put(Long.parseLong(fields.get(0)),
+                fields.subList(1,
+                    fields.size()));
+        }
+        assertEquals(new ArrayList<>(expected.keySet()),
+            new ArrayList<>(exported.keySet()));
+        assertEquals(expected,
+            exported);
+    }
+
+    @Test
+    public void exportHasOnlyTheColumnsAskedForInTheirOrder() throws Exception
+    {
+        List<String> ndjson = export("?columns=roles,username",
+            "application/x-ndjson",
+            null).lines();
+        List<String> csv = export("?columns=roles,username",
+            "text/csv",
+            null).lines();
+
+        assertEquals("roles,username",
+            csv.get(0));
+        assertEquals(expected.size(),
+            ndjson.size());
+        assertEquals(expected.size() + 1,
+            csv.size());
+        int i = 0;
+        for (List<String> user : expected.values())
+        {
+            JsonNode row = objectMapper.readTree(ndjson.get(i));
+            assertEquals(Arrays.asList("roles",
+                "username"),
+                fieldNames(row));
+            assertEquals(user.get(3),
+                join(row.get("roles")));
+            assertEquals(user.get(0),
+                row.get("username")
+                    .asText());
+            assertEquals(user.get(3) + "," + user.get(0),
+                csv.get(i + 1));
+            i++;
+        }
+    }
+
+    @Test
+    public void exportHonoursQualityValuesOfZero() throws Exception
+    {
+        Export export = export("",
+            "text/csv;q=0, application/x-ndjson",
+            "gzip;q=0, identity");
+        assertEquals("application/x-ndjson;charset=UTF-8",
+            export.contentType);
+        assertNull(export.contentEncoding);
+        assertEquals(expected.size(),
+            export.lines()
+                .size());
+
+        export = export("",
+            "application/x-ndjson;q=0.5, text/csv",
+            "deflate, gzip;q=0.2");
+        assertEquals("text/csv;charset=UTF-8",
+            export.contentType);
+        assertEquals("gzip",
+            export.contentEncoding);
+
+        export = export("",
+            "*/*",
+            "GZIP;q=0.0");
+        assertEquals("application/x-ndjson;charset=UTF-8",
+            export.contentType);
+        assertNull(export.contentEncoding);
+    }
+
+    @Test
+    public void onlyAdminsMayExport()
+    {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(TestTokens.signOn(restTemplate,
+            "cinnamon",
+            "1234567"));
+        for (String url : new String[]{"/users/export", "/users/export/", "/users/export?columns=username"})
+        {
+            assertEquals(url,
+                HttpStatus.FORBIDDEN,
+                restTemplate.exchange(url,
+                    HttpMethod.GET,
+                    new HttpEntity<>(headers),
+                    String.class)
+                    .getStatusCode());
+        }
+
+        // Spring MVC sends the URL with a trailing slash to the export too
+        headers.setBearerAuth(token);
+        assertEquals(HttpStatus.OK,
+            restTemplate.exchange("/users/export/",
+                HttpMethod.GET,
+                new HttpEntity<>(headers),
+                String.class)
+                .getStatusCode());
+    }
+
+    @Test
+    public void exportOfAnUnknownColumnIsABadRequest()
+    {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        ResponseEntity<String> unknownColumn = restTemplate.exchange("/users/export?columns=username,password",
+            HttpMethod.GET,
+            new HttpEntity<>(headers),
+            String.class);
+        assertEquals(HttpStatus.BAD_REQUEST,
+            unknownColumn.getStatusCode());
+        assertTrue(unknownColumn.getBody(),
+            unknownColumn.getBody()
+                .contains("\"Bad Request\""));
+    }
+
+    /**
+     * Exports the users as admin
+     *
+     * @param query          The query string, including the ?
+     * @param accept         The Accept header
+     * @param acceptEncoding The Accept-Encoding header, or null to send none
+     * @return The response, decompressed if it came compressed
+     */
+    private Export export(
+        String query,
+        String accept,
+        String acceptEncoding) throws
+                               IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/users/export" + query).openConnection();
+        connection.setRequestProperty(HttpHeaders.AUTHORIZATION,
+            "Bearer " + token);
+        connection.setRequestProperty(HttpHeaders.ACCEPT,
+            accept);
+        if (acceptEncoding != null)
+        {
+            connection.setRequestProperty(HttpHeaders.ACCEPT_ENCODING,
+                acceptEncoding);
+        }
+        assertEquals(HttpStatus.OK.value(),
+            connection.getResponseCode());
+
+        Export export = new Export();
+        export.contentType = connection.getContentType()
+            .replace(" ",
+                "");
+        export.contentEncoding = connection.getContentEncoding();
+        try (InputStream in = connection.getInputStream())
+        {
+            byte[] body = StreamUtils.copyToByteArray(in);
+            if ("gzip".equals(export.contentEncoding))
+            {
+                body = StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(body)));
+            }
+            export.body = new String(body,
+                StandardCharsets.UTF_8);
+        }
+        return export;
+    }
+
+    private static List<String> fieldNames(JsonNode row)
+    {
+        List<String> names = new ArrayList<>();
+        row.fieldNames()
+            .forEachRemaining(names::add);
+        return names;
+    }
+
+    /**
+     * The strings of a JSON array joined with semicolons, as the CSV export writes them
+     */
+    private static String join(JsonNode array)
+    {
+        List<String> values = new ArrayList<>();
+        for (JsonNode value : array)
+        {
+            values.add(value.asText());
+        }
+        return String.join(";",
+            values);
+    }
+
+    /**
+     * An export as received
+     */
+    private static class Export
+    {
+        String contentType;
+
+        String contentEncoding;
+
+        String body;
+
+        /**
+         * The lines of the body, without the line break ending the last one
+         */
+        List<String> lines()
+        {
+            List<String> lines = new ArrayList<>(Arrays.asList(body.split("\n",
+                -1)));
+            assertEquals("",
+                lines.remove(lines.size() - 1));
+            return lines;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.lambdaschool.usermodel.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lambdaschool.usermodel.TestTokens;
+import com.lambdaschool.usermodel.UserModelApplicationTesting;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Posts NDJSON and CSV bodies with good and bad rows to /users/bulk and checks what was imported, what was not,
+ * and that each failed row is reported with its line number. Chunks are 3 rows so the rows below span several chunks,
+ * including duplicates within a chunk and a chunk that fails to save and is retried one row at a time.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    classes = UserModelApplicationTesting.class,
+    properties = {
+        "usermodel.users.import.chunk-size=3",
+        "usermodel.security.bcrypt-strength=4",
+        "h2.tcp.enabled=false",
+        "h2.web.enabled=false"})
+public class UserControllerImportTest
+{
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    /**
+     * A username longer than the username column, so it passes the row checks but its insert fails
+     */
+    private static final String TOO_LONG = new String(new char[300]).replace('\0',
+        'x');
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String token;
+
+    @Before
+    public void setUp()
+    {
+        token = TestTokens.signOn(restTemplate,
+            "admin",
+            "password");
+    }
+
+    @Test
+    public void importNdjsonReportsBadRowsByLine() throws Exception
+    {
+        String body = String.join("\n",
+            // chunk 1: lines 1, 4 and 5
+            "{\"username\":\"ndjson1\",\"password\":\"pw\",\"primaryemail\":\"ndjson1@import.local\",\"useremails\":[\"ndjson1@other.local\"],\"roles\":[\"data\"]}",
+            "",
+            "this is not json",
+            "{\"username\":\"ndjson2\",\"primaryemail\":\"ndjson2@import.local\"}",
+            "{\"username\":\"NDJSON1\",\"password\":\"pw\",\"primaryemail\":\"ndjson1b@import.local\"}",
+            // chunk 2: lines 6, 7 and 8. 7 and 8 are saved together, fail, and are saved again one at a time
+            "{\"username\":\"admin\",\"password\":\"pw\",\"primaryemail\":\"admin2@import.local\"}",
+            "{\"username\":\"" + TOO_LONG + "\",\"password\":\"pw\",\"primaryemail\":\"long@import.local\"}",
+            "{\"username\":\"ndjson4\",\"password\":\"pw\",\"primaryemail\":\"ndjson4@import.local\"}",
+            // chunk 3: lines 9, 10 and 11
+            "{\"username\":\"ndjson5\",\"password\":\"pw\",\"primaryemail\":\"ndjson5@import.local\",\"roles\":[\"nosuchrole\"]}",
+            "{\"username\":\"ndjson6\",\"password\":\"pw\",\"primaryemail\":\"NDJSON1@import.local\"}",
+            "{\"username\":\"ndjson7\",\"password\":\"pw\",\"primaryemail\":\"ndjson7@import.local\",\"roles\":[\"admin\",\"data\"]}") + "\n";
+
+        JsonNode result = importUsers(body,
+            NDJSON);
+
+        assertEquals(3,
+            result.get("imported")
+                .asLong());
+        assertEquals(7,
+            result.get("failed")
+                .asLong());
+        assertEquals(Arrays.asList(3L,
+            4L,
+            5L,
+            6L,
+            7L,
+            9L,
+            10L),
+            linesOf(result));
+        assertMessage(result,
+            3,
+            "Could not read the row");
+        assertMessage(result,
+            4,
+            "password");
+        assertMessage(result,
+            5,
+            "Username ndjson1 is already taken");
+        assertMessage(result,
+            6,
+            "Username admin is already taken");
+        assertMessage(result,
+            7,
+            "Could not save the user");
+        assertMessage(result,
+            9,
+            "Role NOSUCHROLE not found!");
+        assertMessage(result,
+            10,
+            "Primary email ndjson1@import.local is already taken");
+
+        JsonNode ndjson1 = findUser("ndjson1");
+        assertEquals("ndjson1@other.local",
+            ndjson1.get("useremails")
+                .get(0)
+                .get("useremail")
+                .asText());
+        assertEquals(Arrays.asList("DATA"),
+            rolesOf(ndjson1));
+        assertEquals(Arrays.asList("USER"),
+            rolesOf(findUser("ndjson4")));
+        assertEquals(Arrays.asList("ADMIN",
+            "DATA"),
+            rolesOf(findUser("ndjson7")));
+    }
+
+    @Test
+    public void importCsvSplitsQuotedFieldsAndReportsBadRowsByLine() throws Exception
+    {
+        String body = String.join("\n",
+            "",
+            "primaryemail, Username ,password,roles,useremails",
+            "csv1@import.local,\"csv\"\"1\",\"pw,with,commas\",\"data;user\",\"csv1a@other.local;csv1b@other.local\"",
+            "not an email,csv2,pw",
+            "csv3@import.local,csv3",
+            "csv4@import.local,csv4,pw,,",
+            "csv5@import.local,\"csv\"\"1\",pw") + "\n";
+
+        JsonNode result = importUsers(body,
+            MediaType.parseMediaType("text/csv"));
+
+        assertEquals(2,
+            result.get("imported")
+                .asLong());
+        assertEquals(3,
+            result.get("failed")
+                .asLong());
+        assertEquals(Arrays.asList(4L,
+            5L,
+            7L),
+            linesOf(result));
+        assertMessage(result,
+            4,
+            "primaryemail");
+        assertMessage(result,
+            5,
+            "password");
+        assertMessage(result,
+            7,
+            "Username csv\"1 is already taken");
+
+        JsonNode csv1 = findUser("csv\"1");
+        assertEquals("csv1@import.local",
+            csv1.get("primaryemail")
+                .asText());
+        assertEquals(2,
+            csv1.get("useremails")
+                .size());
+        assertEquals(Arrays.asList("DATA",
+            "USER"),
+            rolesOf(csv1));
+        assertEquals(Arrays.asList("USER"),
+            rolesOf(findUser("csv4")));
+    }
+
+    @Test
+    public void importCsvWithoutTheRequiredColumnsImportsNothing() throws Exception
+    {
+        JsonNode result = importUsers("username,primaryemail\ncsvnopassword,csvnopassword@import.local\n",
+            MediaType.parseMediaType("text/csv"));
+
+        assertEquals(0,
+            result.get("imported")
+                .asLong());
+        assertEquals(Arrays.asList(1L),
+            linesOf(result));
+        assertMessage(result,
+            1,
+            "username, password and primaryemail");
+        assertEquals(HttpStatus.NOT_FOUND,
+            exchange(HttpMethod.GET,
+                "/users/user/name/{name}",
+                "csvnopassword").getStatusCode());
+    }
+
+    /**
+     * Posts a body to /users/bulk as admin
+     *
+     * @param body        The rows
+     * @param contentType NDJSON or CSV
+     * @return The import result
+     */
+    private JsonNode importUsers(
+        String body,
+        MediaType contentType) throws
+                               Exception
+    {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        headers.setContentType(contentType);
+        ResponseEntity<String> response = restTemplate.exchange("/users/bulk",
+            HttpMethod.POST,
+            new HttpEntity<>(body,
+                headers),
+            String.class);
+        assertEquals(HttpStatus.OK,
+            response.getStatusCode());
+        return objectMapper.readTree(response.getBody());
+    }
+
+    /**
+     * Reads a user as admin
+     *
+     * @param username The username of the user
+     * @return The user, which must exist
+     */
+    private JsonNode findUser(String username) throws
+                                               Exception
+    {
+        ResponseEntity<String> response = exchange(HttpMethod.GET,
+            "/users/user/name/{name}",
+            username);
+        assertEquals(HttpStatus.OK,
+            response.getStatusCode());
+        return objectMapper.readTree(response.getBody());
+    }
+
+    private ResponseEntity<String> exchange(
+        HttpMethod method,
+        String url,
+        Object... uriVariables)
+    {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        return restTemplate.exchange(url,
+            method,
+            new HttpEntity<>(headers),
+            String.class,
+            uriVariables);
+    }
+
+    /**
+     * The line numbers of the reported errors, in the order reported
+     */
+    private static List<Long> linesOf(JsonNode result)
+    {
+        List<Long> lines = new ArrayList<>();
+        for (JsonNode error : result.get("errors"))
+        {
+            lines.add(error.get("line")
+                .asLong());
+        }
+        return lines;
+    }
+
+    /**
+     * The names of the roles of a user, sorted
+     */
+    private static List<String> rolesOf(JsonNode user)
+    {
+        List<String> roles = new ArrayList<>();
+        for (JsonNode userRole : user.get("roles"))
+        {
+            roles.add(userRole.get("role")
+                .get("name")
+                .asText());
+        }
+        roles.sort(null);
+        return roles;
+    }
+
+    /**
+     * Checks the error reported for a line mentions the given text
+     */
+    private static void assertMessage(
+        JsonNode result,
+        long line,
+        String expected)
+    {
+        for (JsonNode error : result.get("errors"))
+        {
+            if (error.get("line")
+                .asLong() == line)
+            {
+                String message = error.get("message")
+                    .asText();
+                assertTrue("line " + line + ": " + message,
+                    message.contains(expected));
+                return;
+            }
+        }
+        throw new AssertionError("no error reported for line " + line);
+    }
+}
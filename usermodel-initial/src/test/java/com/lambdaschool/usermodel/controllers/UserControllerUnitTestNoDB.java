@@ -33,9 +33,12 @@ import org.springframework.web.context.WebApplicationContext;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -98,8 +101,13 @@ public class UserControllerUnitTestNoDB {
 
     @Test
     public void listAllUsers() throws Exception {
-        String apiUrl = "/users";
-        Mockito.when(userService.findAll()).thenReturn(userList);
+        String apiUrl = "/users/users";
+        // the users are streamed page by page, here all of them in one page
+        Mockito.doAnswer(invocation -> {
+            Consumer<List<User>> pageConsumer = invocation.getArgument(2);
+            pageConsumer.accept(userList);
+            return null;
+        }).when(userService).findAllAfter(eq(0L), anyInt(), any());
 
         RequestBuilder rb = MockMvcRequestBuilders.get(apiUrl)
             .accept(MediaType.APPLICATION_JSON);
@@ -194,7 +202,7 @@ public class UserControllerUnitTestNoDB {
     @Test
     public void getUserLikeName() throws Exception {
         String apiUrl = "/user/name/like/Justin";
-        Mockito.when(userService.findByNameContaining("Justin")).thenReturn(userList);
+        Mockito.when(userService.findByNameContaining("Justin", 0, 25)).thenReturn(userList);
 
         RequestBuilder rb = MockMvcRequestBuilders.get(apiUrl)
             .accept(MediaType.APPLICATION_JSON);
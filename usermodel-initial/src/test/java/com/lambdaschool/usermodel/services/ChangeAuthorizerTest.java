@@ -0,0 +1,117 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.TestTokens;
+import com.lambdaschool.usermodel.UserModelApplicationTesting;
+import com.lambdaschool.usermodel.exceptions.ResourceNotFoundException;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Decides changes to users for users signed on over HTTP: an admin may change anyone, a user only themselves.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    classes = UserModelApplicationTesting.class,
+    properties = {
+        "h2.tcp.enabled=false",
+        "h2.web.enabled=false"})
+public class ChangeAuthorizerTest
+{
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private TokenStore tokenStore;
+
+    @Autowired
+    private ChangeAuthorizer changeAuthorizer;
+
+    @After
+    public void tearDown()
+    {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void adminMayChangeAnyone()
+    {
+        Authentication admin = tokenStore.readAuthentication(TestTokens.signOn(restTemplate,
+            "admin",
+            "password"));
+        assertTrue(admin.getPrincipal() instanceof SecurityUser);
+
+        assertEquals(ChangeAuthorization.ADMIN,
+            changeAuthorizer.decide(admin,
+                "cinnamon"));
+        assertEquals(ChangeAuthorization.OWNER,
+            changeAuthorizer.decide(admin,
+                "admin"));
+
+        SecurityContextHolder.getContext()
+            .setAuthentication(admin);
+        assertEquals(ChangeAuthorization.ADMIN,
+            changeAuthorizer.decide("barnbarn"));
+        changeAuthorizer.checkAllowed("barnbarn");
+    }
+
+    @Test
+    public void userMayChangeOnlyThemselves()
+    {
+        Authentication cinnamon = tokenStore.readAuthentication(TestTokens.signOn(restTemplate,
+            "cinnamon",
+            "1234567"));
+
+        assertEquals(ChangeAuthorization.OWNER,
+            changeAuthorizer.decide(cinnamon,
+                "cinnamon"));
+        assertEquals(ChangeAuthorization.OWNER,
+            changeAuthorizer.decide(cinnamon,
+                "Cinnamon"));
+        assertEquals(ChangeAuthorization.DENIED,
+            changeAuthorizer.decide(cinnamon,
+                "barnbarn"));
+
+        SecurityContextHolder.getContext()
+            .setAuthentication(cinnamon);
+        changeAuthorizer.checkAllowed("cinnamon");
+        ResourceNotFoundException denied = null;
+        try
+        {
+            changeAuthorizer.checkAllowed("admin");
+            fail("cinnamon may not change admin");
+        } catch (ResourceNotFoundException e)
+        {
+            denied = e;
+        }
+        try
+        {
+            changeAuthorizer.checkAllowed("barnbarn");
+            fail("cinnamon may not change barnbarn");
+        } catch (ResourceNotFoundException e)
+        {
+            assertSame(denied,
+                e);
+        }
+    }
+
+    @Test
+    public void nobodySignedOnMayChangeNobody()
+    {
+        assertEquals(ChangeAuthorization.DENIED,
+            changeAuthorizer.decide(null,
+                "cinnamon"));
+    }
+}
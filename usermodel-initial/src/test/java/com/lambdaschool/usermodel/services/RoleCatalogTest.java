@@ -0,0 +1,134 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.TestTokens;
+import com.lambdaschool.usermodel.UserModelApplicationTesting;
+import com.lambdaschool.usermodel.exceptions.ResourceNotFoundException;
+import com.lambdaschool.usermodel.models.Role;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.BitSet;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Signs on over HTTP and checks the principal the token store keeps for the token still carries its authority bits,
+ * and that the role catalog decides whether it is an admin from those bits alone. Also checks a role the catalog
+ * still lists after it was deleted is not found.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    classes = UserModelApplicationTesting.class,
+    properties = {
+        "h2.tcp.enabled=false",
+        "h2.web.enabled=false"})
+public class RoleCatalogTest
+{
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private TokenStore tokenStore;
+
+    @Autowired
+    private RoleCatalog roleCatalog;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void signedOnAdminIsCheckedByBit()
+    {
+        Authentication authentication = tokenStore.readAuthentication(TestTokens.signOn(restTemplate,
+            "admin",
+            "password"));
+
+        assertTrue(authentication.getPrincipal() instanceof SecurityUser);
+        BitSet bits = ((SecurityUser) authentication.getPrincipal()).getAuthorityBits();
+        assertNotNull(bits);
+        assertEquals(roleCatalog.findAuthorityBits(authentication.getAuthorities()),
+            bits);
+        assertTrue(roleCatalog.isAdmin(authentication));
+
+        // without any authorities to compare by name, only the bits can tell this principal is an admin
+        assertTrue(roleCatalog.isAdmin(new UsernamePasswordAuthenticationToken(authentication.getPrincipal(),
+            null,
+            Collections.emptyList())));
+    }
+
+    @Test
+    public void signedOnUserIsNotAnAdminByBit()
+    {
+        Authentication authentication = tokenStore.readAuthentication(TestTokens.signOn(restTemplate,
+            "cinnamon",
+            "1234567"));
+
+        assertTrue(authentication.getPrincipal() instanceof SecurityUser);
+        assertNotNull(((SecurityUser) authentication.getPrincipal()).getAuthorityBits());
+        assertFalse(roleCatalog.isAdmin(authentication));
+        assertFalse(roleCatalog.isAdmin(new UsernamePasswordAuthenticationToken(authentication.getPrincipal(),
+            null,
+            Collections.emptyList())));
+    }
+
+    @Test
+    public void roleDeletedBehindTheCatalogIsNotFound()
+    {
+        long roleid = roleService.save(new Role("stale"))
+            .getRoleid();
+        assertTrue(roleCatalog.contains(roleid));
+        jdbcTemplate.update("DELETE FROM roles WHERE roleid = ?",
+            roleid);
+        assertTrue(roleCatalog.contains(roleid));
+
+        assertNotFound(() -> roleService.findRoleById(roleid),
+            "Role id " + roleid + " not found!");
+        assertNotFound(() -> roleService.findByName("stale"),
+            "stale");
+        assertNotFound(() -> roleService.findReferenceByName("stale"),
+            "stale");
+        assertNotFound(() -> roleService.findRolesByIds(Collections.singletonList(roleid)),
+            "Role id " + roleid + " not found!");
+
+        // finding the catalog out of date reloads it
+        assertFalse(roleCatalog.contains(roleid));
+    }
+
+    /**
+     * Checks looking up a role fails as not found
+     *
+     * @param lookup  Looks up the role
+     * @param message The end (String) of the message expected
+     */
+    private void assertNotFound(
+        Runnable lookup,
+        String message)
+    {
+        try
+        {
+            lookup.run();
+            fail("expected " + message);
+        } catch (ResourceNotFoundException e)
+        {
+            assertTrue(e.getMessage(),
+                e.getMessage()
+                    .endsWith(message));
+        }
+    }
+}
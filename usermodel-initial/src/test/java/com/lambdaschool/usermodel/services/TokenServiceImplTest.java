@@ -0,0 +1,54 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.UserModelApplicationTesting;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Issues a token the way signing up does and checks what the token store keeps for it
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = UserModelApplicationTesting.class,
+    properties = {
+        "h2.tcp.enabled=false",
+        "h2.web.enabled=false"})
+public class TokenServiceImplTest
+{
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private TokenStore tokenStore;
+
+    @Autowired
+    private UserDetailsService securityUserService;
+
+    @Test
+    public void storedPrincipalHasNoPassword()
+    {
+        OAuth2AccessToken token = tokenService.createAccessToken("cinnamon");
+
+        OAuth2Authentication authentication = tokenStore.readAuthentication(token.getValue());
+        assertEquals("cinnamon",
+            authentication.getName());
+        assertTrue(authentication.getPrincipal() instanceof UserDetails);
+        assertNull(((UserDetails) authentication.getPrincipal()).getPassword());
+
+        // only the copy handed to the token was erased, the cached user details can still sign on
+        assertNotNull(securityUserService.loadUserByUsername("cinnamon")
+            .getPassword());
+    }
+}
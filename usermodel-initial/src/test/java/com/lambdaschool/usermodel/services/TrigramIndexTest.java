@@ -0,0 +1,336 @@
+package com.lambdaschool.usermodel.services;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares what the trigram index finds with a plain scan of every document for the substring, ignoring case.
+ */
+public class TrigramIndexTest
+{
+    /**
+     * Few letters, so random words share many trigrams and the lists to intersect are long
+     */
+    private static final String LETTERS = "abcdeAB.@";
+
+    private final Random random = new Random(42);
+
+    private TrigramIndex index;
+
+    /**
+     * What the index should hold, by id in id order
+     */
+    private Map<Long, List<String>> documents;
+
+    @Before
+    public void setUp()
+    {
+        index = new TrigramIndex();
+        documents = new TreeMap<>();
+        for (long id = 1; id <= 500; id++)
+        {
+            put(id,
+                Arrays.asList(word(),
+                    word()));
+        }
+    }
+
+    @Test
+    public void findsWhatAScanFinds()
+    {
+        for (int i = 0; i < 500; i++)
+        {
+            String substring = substring(6);
+            assertEquals(substring,
+                scan(substring,
+                    0,
+                    Integer.MAX_VALUE),
+                index.search(substring,
+                    0,
+                    Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void intersectsTheShortestListWithTheOthers()
+    {
+        // "aaa" is in every document and "zzz" in only three, so the "zzz" list is walked and the others checked
+        put(1000,
+            Arrays.asList("aaa zzz",
+                "x"));
+        put(1001,
+            Arrays.asList("aaazzz",
+                "x"));
+        put(1002,
+            Arrays.asList("zzza",
+                "zaaa"));
+        for (long id = 1; id <= 500; id++)
+        {
+            put(id,
+                Collections.singletonList("aaa" + word()));
+        }
+
+        assertEquals(Collections.singletonList(1001L),
+            index.search("aazz",
+                0,
+                10));
+        assertEquals(Arrays.asList(1000L,
+                1001L,
+                1002L),
+            index.search("zzz",
+                0,
+                10));
+        // 1002 has every trigram of the substring, but split across its two texts
+        assertEquals(Collections.emptyList(),
+            index.search("zzzaaa",
+                0,
+                10));
+        assertEquals(scan("aaa",
+                0,
+                Integer.MAX_VALUE),
+            index.search("AAA",
+                0,
+                Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void pagesThroughMatchesInIdOrder()
+    {
+        for (String substring : new String[]{"ab", "abc", "b.c", "Ab"})
+        {
+            List<Long> all = scan(substring,
+                0,
+                Integer.MAX_VALUE);
+            assertTrue(substring,
+                all.size() > 10);
+
+            List<Long> paged = new ArrayList<>();
+            List<Long> page;
+            int offset = 0;
+            do
+            {
+                page = index.search(substring,
+                    offset,
+                    7);
+                assertEquals(scan(substring,
+                        offset,
+                        7),
+                    page);
+                paged.addAll(page);
+                offset += page.size();
+            } while (page.size() == 7);
+
+            assertEquals(all,
+                paged);
+            assertEquals(Collections.emptyList(),
+                index.search(substring,
+                    all.size(),
+                    7));
+        }
+    }
+
+    @Test
+    public void replacingADocumentForgetsItsOldText()
+    {
+        put(7,
+            Arrays.asList("oldname",
+                "old@lambdaschool.local"));
+        assertEquals(Collections.singletonList(7L),
+            index.search("oldname",
+                0,
+                10));
+
+        put(7,
+            Arrays.asList("newname",
+                null));
+        assertEquals(Collections.emptyList(),
+            index.search("oldname",
+                0,
+                10));
+        assertEquals(Collections.emptyList(),
+            index.search("lambdaschool",
+                0,
+                10));
+        assertEquals(Collections.singletonList(7L),
+            index.search("NewName",
+                0,
+                10));
+        assertEquals(500,
+            index.size());
+
+        remove(7);
+        remove(7);
+        remove(9999);
+        assertEquals(Collections.emptyList(),
+            index.search("newname",
+                0,
+                10));
+        assertEquals(499,
+            index.size());
+
+        for (int i = 0; i < 200; i++)
+        {
+            long id = 1 + random.nextInt(600);
+            if (random.nextBoolean())
+            {
+                put(id,
+                    Collections.singletonList(word()));
+            } else
+            {
+                remove(id);
+            }
+        }
+        assertEquals(documents.size(),
+            index.size());
+        for (int i = 0; i < 200; i++)
+        {
+            String substring = substring(5);
+            assertEquals(substring,
+                scan(substring,
+                    0,
+                    Integer.MAX_VALUE),
+                index.search(substring,
+                    0,
+                    Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void shortSubstringsAreCheckedAgainstEveryDocument()
+    {
+        put(2000,
+            Collections.singletonList("Q"));
+        put(2001,
+            Collections.singletonList("xQy"));
+
+        assertEquals(Arrays.asList(2000L,
+                2001L),
+            index.search("q",
+                0,
+                10));
+        assertEquals(Collections.singletonList(2001L),
+            index.search("qY",
+                0,
+                10));
+        assertEquals(Collections.singletonList(2001L),
+            index.search("q",
+                1,
+                10));
+        for (String substring : new String[]{"a", "B", ".", "ab", "e@"})
+        {
+            assertEquals(substring,
+                scan(substring,
+                    3,
+                    20),
+                index.search(substring,
+                    3,
+                    20));
+        }
+
+        // the empty substring is in every document
+        assertEquals(new ArrayList<>(documents.keySet()),
+            index.search("",
+                0,
+                Integer.MAX_VALUE));
+
+        index.clear();
+        assertEquals(0,
+            index.size());
+        assertEquals(Collections.emptyList(),
+            index.search("q",
+                0,
+                10));
+    }
+
+    /**
+     * Puts a document in both the index and the documents scanned
+     */
+    private void put(
+        long id,
+        Collection<String> texts)
+    {
+        index.put(id,
+            texts);
+        documents.put(id,
+            new ArrayList<>(texts));
+    }
+
+    /**
+     * Removes a document from both the index and the documents scanned
+     */
+    private void remove(long id)
+    {
+        index.remove(id);
+        documents.remove(id);
+    }
+
+    /**
+     * Finds the matching ids by checking every document
+     */
+    private List<Long> scan(
+        String substring,
+        int offset,
+        int limit)
+    {
+        String lowercase = substring.toLowerCase();
+        List<Long> found = new ArrayList<>();
+        int skipped = 0;
+        for (Map.Entry<Long, List<String>> document : documents.entrySet())
+        {
+            boolean matches = false;
+            for (String text : document.getValue())
+            {
+                matches |= text != null && text.toLowerCase()
+                    .contains(lowercase);
+            }
+            if (matches && found.size() < limit)
+            {
+                if (skipped < offset)
+                {
+                    skipped++;
+                } else
+                {
+                    found.add(document.getKey());
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The start of a random word, from 1 to the given number of characters long
+     */
+    private String substring(int maxLength)
+    {
+        String word = word();
+        return word.substring(0,
+            1 + random.nextInt(Math.min(maxLength,
+                word.length())));
+    }
+
+    /**
+     * A random word of 3 to 10 characters
+     */
+    private String word()
+    {
+        StringBuilder word = new StringBuilder();
+        int length = 3 + random.nextInt(8);
+        for (int i = 0; i < length; i++)
+        {
+            word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,227 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.UserModelApplicationTesting;
+import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.models.UserImportError;
+import com.lambdaschool.usermodel.models.UserImportResult;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs an import through the hashing pipeline with a stub password encoder that is slow for some rows
+ * and fails for others. Each time the stub starts a hash it records how many rows have started hashing but are
+ * not yet saved, which must never be more than usermodel.users.import.in-flight.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = UserModelApplicationTesting.class,
+    properties = {
+        "usermodel.users.import.chunk-size=5",
+        "usermodel.users.import.in-flight=10",
+        "usermodel.users.import.hash-threads=4",
+        "usermodel.security.bcrypt-strength=4",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "h2.tcp.enabled=false",
+        "h2.web.enabled=false"})
+@Import(UserImportServiceImplPipelineTest.StubEncoderConfig.class)
+public class UserImportServiceImplPipelineTest
+{
+    private static final int ROWS = 60;
+
+    private static final int IN_FLIGHT = 10;
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private StubPasswordEncoder stubPasswordEncoder;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @After
+    public void tearDown()
+    {
+        stubPasswordEncoder.saved = null;
+    }
+
+    @Test
+    public void importKeepsOrderReportsFailedHashesAndStaysWithinInFlight() throws Exception
+    {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class)
+            .getStatistics();
+        long insertedBefore = statistics.getEntityStatistics(User.class.getName())
+            .getInsertCount();
+        // rows that left the pipeline: saved, or given up on because their hash failed
+        stubPasswordEncoder.saved = () -> (int) (statistics.getEntityStatistics(User.class.getName())
+            .getInsertCount() - insertedBefore) + stubPasswordEncoder.failed.get();
+
+        StringBuilder body = new StringBuilder();
+        List<Long> failingLines = new ArrayList<>();
+        for (int line = 1; line <= ROWS; line++)
+        {
+            String password = "pw";
+            if (line % 11 == 0)
+            {
+                password = StubPasswordEncoder.FAIL;
+                failingLines.add((long) line);
+            } else if (line % 7 == 0 || line <= 3)
+            {
+                password = StubPasswordEncoder.SLOW;
+            }
+            body.append("{\"username\":\"pipeline")
+                .append(line)
+                .append("\",\"password\":\"")
+                .append(password)
+                .append("\",\"primaryemail\":\"pipeline")
+                .append(line)
+                .append("@import.local\"}\n");
+        }
+
+        UserImportResult result = userImportService.importNdjson(new BufferedReader(new StringReader(body.toString())));
+
+        assertEquals(ROWS - failingLines.size(),
+            result.getImported());
+        assertEquals(failingLines.size(),
+            result.getFailed());
+        List<Long> errorLines = new ArrayList<>();
+        for (UserImportError error : result.getErrors())
+        {
+            errorLines.add(error.getLine());
+            assertTrue(error.getMessage(),
+                error.getMessage()
+                    .startsWith("Could not hash the password"));
+        }
+        assertEquals(failingLines,
+            errorLines);
+
+        // users are given ids in the order they are saved, which must be the order of their rows,
+        // even though the slow hashes of earlier rows finish after the hashes of later rows
+        long previous = 0;
+        for (int line = 1; line <= ROWS; line++)
+        {
+            if (line % 11 == 0)
+            {
+                continue;
+            }
+            User user = userService.findByName("pipeline" + line);
+            assertEquals("{noop}pw" + (line % 7 == 0 || line <= 3 ? StubPasswordEncoder.SLOW : ""),
+                user.getPassword());
+            assertTrue("line " + line + " saved out of order",
+                user.getUserid() > previous);
+            previous = user.getUserid();
+        }
+
+        assertTrue("rows waiting to be saved reached " + stubPasswordEncoder.mostWaiting.get(),
+            stubPasswordEncoder.mostWaiting.get() <= IN_FLIGHT);
+        assertTrue(stubPasswordEncoder.mostWaiting.get() > 0);
+    }
+
+    /**
+     * Hashes passwords the usual way outside of the test. During the test, a password of slow takes a while to hash,
+     * a password of fail cannot be hashed, and any other password is "hashed" with the {noop} prefix.
+     */
+    static class StubPasswordEncoder
+        implements PasswordEncoder
+    {
+        static final String SLOW = "slow";
+
+        static final String FAIL = "fail";
+
+        private final PasswordEncoder delegate;
+
+        /**
+         * The number of rows that have left the pipeline. Set by the test while it runs an import, otherwise null.
+         */
+        volatile IntSupplier saved;
+
+        final AtomicInteger started = new AtomicInteger();
+
+        final AtomicInteger failed = new AtomicInteger();
+
+        final AtomicInteger mostWaiting = new AtomicInteger();
+
+        StubPasswordEncoder(PasswordEncoder delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword)
+        {
+            IntSupplier saved = this.saved;
+            if (saved == null)
+            {
+                return delegate.encode(rawPassword);
+            }
+
+            int waiting = started.incrementAndGet() - saved.getAsInt();
+            mostWaiting.accumulateAndGet(waiting,
+                Math::max);
+
+            if (SLOW.contentEquals(rawPassword))
+            {
+                try
+                {
+                    Thread.sleep(100);
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread()
+                        .interrupt();
+                }
+            } else if (FAIL.contentEquals(rawPassword))
+            {
+                failed.incrementAndGet();
+                throw new IllegalStateException("the stub does not hash " + FAIL);
+            }
+            return "{noop}pw" + (SLOW.contentEquals(rawPassword) ? SLOW : "");
+        }
+
+        @Override
+        public boolean matches(
+            CharSequence rawPassword,
+            String encodedPassword)
+        {
+            return delegate.matches(rawPassword,
+                encodedPassword);
+        }
+    }
+
+    @TestConfiguration
+    static class StubEncoderConfig
+    {
+        @Bean
+        @Primary
+        StubPasswordEncoder stubPasswordEncoder(
+            @Qualifier("encoder")
+                PasswordEncoder encoder)
+        {
+            return new StubPasswordEncoder(encoder);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.lambdaschool.usermodel.services;
+
+import com.lambdaschool.usermodel.UserModelApplicationTesting;
+import com.lambdaschool.usermodel.models.Role;
+import com.lambdaschool.usermodel.models.User;
+import com.lambdaschool.usermodel.models.UserRoles;
+import com.lambdaschool.usermodel.models.Useremail;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Counts the writes to the userroles and useremails tables when a user is replaced or updated.
+ * Only the roles and useremails that actually change may be written.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = UserModelApplicationTesting.class,
+    properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "h2.tcp.enabled=false",
+        "h2.web.enabled=false"})
+@Transactional
+public class UserServiceImplChildWritesTest
+{
+    /**
+     * The seeded user cinnamon
+     */
+    private static final String USERNAME = "cinnamon";
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+
+    @Before
+    public void setUp()
+    {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class)
+            .getStatistics();
+    }
+
+    @Test
+    public void unchangedPutWritesNoChildRows()
+    {
+        User copy = copyOf(userService.findByName(USERNAME));
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        userService.save(copy);
+        entityManager.flush();
+
+        assertEquals(0,
+            writes(UserRoles.class));
+        assertEquals(0,
+            writes(Useremail.class));
+    }
+
+    @Test
+    public void changedPutWritesOnlyTheDifferences()
+    {
+        User current = userService.findByName(USERNAME);
+        User copy = copyOf(current);
+
+        // swap one useremail and add the ADMIN role
+        copy.getUseremails()
+            .remove(0);
+        copy.getUseremails()
+            .add(new Useremail(copy,
+                "added@email.local"));
+        Role admin = new Role();
+        admin.setRoleid(1);
+        copy.getRoles()
+            .add(new UserRoles(copy,
+                admin));
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        userService.save(copy);
+        entityManager.flush();
+
+        EntityStatistics roles = statistics.getEntityStatistics(UserRoles.class.getName());
+        EntityStatistics useremails = statistics.getEntityStatistics(Useremail.class.getName());
+        assertEquals(1,
+            roles.getInsertCount());
+        assertEquals(0,
+            roles.getDeleteCount() + roles.getUpdateCount());
+        assertEquals(1,
+            useremails.getInsertCount());
+        assertEquals(1,
+            useremails.getDeleteCount());
+        assertEquals(0,
+            useremails.getUpdateCount());
+    }
+
+    /**
+     * A detached copy of the user, as a client would send it back on a PUT
+     */
+    private static User copyOf(User user)
+    {
+        User copy = new User();
+        copy.setUserid(user.getUserid());
+        copy.setUsername(user.getUsername());
+        copy.setPasswordNoEncrypt(user.getPassword());
+        copy.setPrimaryemail(user.getPrimaryemail());
+        for (UserRoles ur : user.getRoles())
+        {
+            Role role = new Role();
+            role.setRoleid(ur.getRole()
+                .getRoleid());
+            copy.getRoles()
+                .add(new UserRoles(copy,
+                    role));
+        }
+        for (Useremail ue : user.getUseremails())
+        {
+            copy.getUseremails()
+                .add(new Useremail(copy,
+                    ue.getUseremail()));
+        }
+        return copy;
+    }
+
+    /**
+     * The rows of the given entity inserted, updated or deleted since the statistics were cleared
+     */
+    private long writes(Class<?> entity)
+    {
+        EntityStatistics entityStatistics = statistics.getEntityStatistics(entity.getName());
+        return entityStatistics.getInsertCount() + entityStatistics.getUpdateCount() + entityStatistics.getDeleteCount();
+    }
+}
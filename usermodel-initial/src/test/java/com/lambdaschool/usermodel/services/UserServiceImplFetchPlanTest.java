@@ -0,0 +1,107 @@
+package com.lambdaschool.usermodel.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lambdaschool.usermodel.UserModelApplicationTesting;
+import com.lambdaschool.usermodel.models.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the SQL statements it takes to list users, including serializing them the way the controllers do.
+ * Listing any number of users must cost a constant number of round trips: one for the users,
+ * one for their useremails and one for their roles.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = UserModelApplicationTesting.class,
+    properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "h2.tcp.enabled=false",
+        "h2.web.enabled=false"})
+@Transactional
+public class UserServiceImplFetchPlanTest
+{
+    private static final long STATEMENTS_PER_LIST = 3;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Statistics statistics;
+
+    @Before
+    public void setUp()
+    {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class)
+            .getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void findAllCostsConstantStatements() throws
+                                                 Exception
+    {
+        List<User> users = userService.findAll();
+        String json = objectMapper.writeValueAsString(users);
+
+        assertTrue(users.size() > 1);
+        assertTrue(json.contains("admin@email.local"));
+        assertTrue(json.contains("ADMIN"));
+        assertEquals(STATEMENTS_PER_LIST,
+            statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findByNameContainingCostsConstantStatements() throws
+                                                              Exception
+    {
+        List<User> users = userService.findByNameContaining("n");
+        String json = objectMapper.writeValueAsString(users);
+
+        assertTrue(users.size() > 1);
+        assertTrue(json.contains("cinnamon@mymail.local"));
+        assertEquals(STATEMENTS_PER_LIST,
+            statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findAllAfterCostsConstantStatementsPerPage()
+    {
+        List<String> pages = new ArrayList<>();
+        userService.findAllAfter(0,
+            2,
+            page ->
+            {
+                try
+                {
+                    pages.add(objectMapper.writeValueAsString(page));
+                } catch (Exception e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+        assertTrue(pages.size() > 1);
+        assertTrue(pages.get(0)
+            .contains("admin@email.local"));
+        assertTrue(statistics.getPrepareStatementCount() <= STATEMENTS_PER_LIST * (pages.size() + 1));
+    }
+}
@@ -19,6 +19,7 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.ArrayList;
@@ -28,6 +29,7 @@ import java.util.Optional;
 import static junit.framework.TestCase.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 
 @RunWith (SpringRunner.class)
 @SpringBootTest (classes = UserModelApplicationTesting.class,
@@ -104,7 +106,7 @@ public class UserServiceImplUnitTestNoDB {
     @Test
     public void a_findByUsername()
     {
-        Mockito.when(userrepos.findByUsernameContainingIgnoreCase("Brittany")).thenReturn(userList);
+        Mockito.when(userrepos.findByUsernameContainingIgnoreCaseOrderByUseridAsc(eq("brittany"), any(Pageable.class))).thenReturn(userList);
 
         assertEquals(3, userRepository.findByUsername("Brittany"));
     }